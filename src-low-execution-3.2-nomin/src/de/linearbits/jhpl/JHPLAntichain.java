@@ -0,0 +1,195 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import de.linearbits.jhpl.JHPLIterator.LongIterator;
+
+/**
+ * Base class for representations that store the antichain of minimal (upwards) or maximal (downwards)
+ * elements of a predictive property as a sequence and answer queries by scanning it.
+ *
+ * @author Fabian Prasser
+ */
+abstract class JHPLAntichain extends JHPLTrie {
+
+    /** Whether we store minimal elements of an upwards-closed set */
+    protected final boolean upwards;
+    /** Buffer for elements read from the antichain */
+    private final int[]     stored;
+
+    /**
+     * Constructs a new instance
+     * @param lattice
+     * @param upwards Whether the antichain represents a property that is predictive for successors
+     */
+    JHPLAntichain(Lattice<?, ?> lattice, boolean upwards) {
+        super(lattice);
+        this.upwards = upwards;
+        this.stored = new int[dimensions];
+    }
+
+    /**
+     * Copies the element at the given index into the given array
+     * @param index
+     * @param element
+     */
+    abstract void get(int index, int[] element);
+
+    @Override
+    void clear(int[] element) {
+        this.clear(element, 0, 0);
+    }
+
+    @Override
+    void compactify() {
+        // Empty by design
+    }
+
+    @Override
+    boolean contains(int[] node) {
+        return contains(node, 0, 0);
+    }
+
+    @Override
+    void contains(long[] ids, int n, boolean[] result) {
+
+        // Answer all queries in a single scan over the antichain
+        int[][] elements = decode(ids, n);
+        Arrays.fill(result, 0, n, false);
+        int remaining = n;
+        for (int index = 0; index < size() && remaining > 0; index++) {
+            get(index, stored);
+            for (int i = 0; i < n; i++) {
+                if (!result[i] && (upwards ? isLessOrEqual(stored, 0, elements[i]) : 
+                                             isGreaterOrEqual(stored, 0, elements[i]))) {
+                    result[i] = true;
+                    remaining--;
+                }
+            }
+        }
+    }
+
+    @Override
+    Iterator<int[]> iterator() {
+        return iterator(-1);
+    }
+
+    @Override
+    Iterator<int[]> iterator(final int level) {
+
+        // Return
+        return new Iterator<int[]>() {
+
+            /** Current element*/
+            int[] element = new int[dimensions];
+            /** Current index*/
+            int   index   = 0;
+
+            @Override public boolean hasNext() { throw new UnsupportedOperationException(); }
+
+            @Override
+            public int[] next() {
+                while (index < size()) {
+                    get(index++, element);
+                    if (level == -1) {
+                        return element;
+                    }
+                    int sum = 0;
+                    for (int i = 0; i < dimensions; i++) {
+                        sum += element[i];
+                    }
+                    if (sum == level) {
+                        return element;
+                    }
+                }
+                return null;
+            }
+            @Override public void remove() { throw new UnsupportedOperationException(); }
+        };
+    }
+
+    @Override
+    LongIterator iteratorLong(final long[] multiplier) {
+
+        final Iterator<int[]> iterator = this.iterator();
+
+        // Return
+        return new LongIterator() {
+
+            @Override public boolean hasNext() { throw new UnsupportedOperationException(); }
+
+            @Override
+            public long next() {
+                int[] element = iterator.next();
+                if (element == null) {
+                    return -1;
+                }
+                long result = 0;
+                for (int i = 0; i < dimensions; i++) {
+                    result += (long) element[i] * multiplier[i];
+                }
+                return result;
+            }
+        };
+    }
+
+    @Override
+    void put(int[] element) {
+        put(element, 0, 0);
+    }
+
+    @Override
+    String toString(String prefix1, String prefix2) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(prefix1).append(getClass().getSimpleName()).append("\n");
+        builder.append(prefix2).append("├── Memory statistics\n");
+        builder.append(prefix2).append("|   └── Allocated: ").append(getByteSize()).append(" [bytes]\n");
+        builder.append(prefix2).append("└── Elements\n");
+        builder.append(prefix2).append("    └── Stored: ").append(size()).append("\n");
+        return builder.toString();
+    }
+
+    /**
+     * Returns whether the first element is greater than or equal to the second element
+     * @param memory
+     * @param offset
+     * @param element
+     * @return
+     */
+    protected boolean isGreaterOrEqual(int[] memory, int offset, int[] element) {
+        for (int i = 0; i < dimensions; i++) {
+            if (memory[offset + i] < element[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the first element is less than or equal to the second element
+     * @param memory
+     * @param offset
+     * @param element
+     * @return
+     */
+    protected boolean isLessOrEqual(int[] memory, int offset, int[] element) {
+        for (int i = 0; i < dimensions; i++) {
+            if (memory[offset + i] > element[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -4,92 +4,92 @@
  * are made available under the terms of the Eclipse Public License v1.0
  * which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v10.html
- * 
+ *
  * Contributors:
  * Fabian Prasser - initial API and implementation
  * ****************************************************************************
  */
 package de.linearbits.jhpl;
 
+import de.linearbits.jhpl.Lattice.Memory;
+
 /**
- * A simple buffer based on an int array
- * 
+ * A simple buffer of integers. Memory is handed out in chunks via allocate(), which returns
+ * the offset of the chunk. Newly allocated memory is initialized with FLAG_NOT_AVAILABLE.
+ *
  * @author Fabian Prasser
  */
-class JHPLBuffer {
-
-    /** Constant*/
-    private static final double GROWTH_FACTOR      = 1.5d;
-    /** Constant*/
-    private static final int    INITIAL_CAPACITY   = 2;
+abstract class JHPLBuffer {
 
     /** Flags */
-    static final int            FLAG_AVAILABLE     = -0x1;
+    static final int FLAG_AVAILABLE     = -0x1;
     /** Flags */
-    static final int            FLAG_NOT_AVAILABLE = 0x0;
-
-    /** The size of the array nodes */
-    private int                 size;
-    /** The array with nodes */
-    int[]                       memory;
+    static final int FLAG_NOT_AVAILABLE = 0x0;
 
     /**
-     * Creates a new instance
+     * Creates a new buffer of the given type
+     * @param memory
+     * @return
      */
-    JHPLBuffer(){
-        this.memory = new int[INITIAL_CAPACITY];
-        this.size = 0;
+    static JHPLBuffer create(Memory memory) {
+        switch (memory) {
+        case DIRECT:
+            return new JHPLBufferOffHeap(false);
+        case MAPPED:
+            return new JHPLBufferOffHeap(true);
+        default:
+            return new JHPLBufferHeap();
+        }
     }
-    
+
     /**
      * Allocates a chunk of the given size
      * @param _size
      * @return
      */
-    int allocate(int _size) {
+    abstract int allocate(int _size);
 
-        // Store
-        int offset = size;
-        size += _size;
+    /**
+     * Returns the number of integers that can be stored without growing the buffer
+     * @return
+     */
+    abstract int capacity();
 
-        // Check, if we need to allocate more memory
-        if (size > memory.length) {
-            
-            // Compute new length
-            int length = memory.length;
-            while (length < size) {
-                length = (int)((double)length * GROWTH_FACTOR);
-            }
-            
-            // Grow
-            int[] newBuffer = new int[length];
-            System.arraycopy(memory, 0, newBuffer, 0, offset);
-            memory = newBuffer;
-        }
-        
-        // New memory is in range offset to offset + _size
-        // No need to initialize, JVM will initialize with 0x0, which == FLAG_NOT_AVAILABLE
-        
-        // Return
-        return offset;
-    }
-    
     /**
      * Ensures the given capacity
      * @param size
      */
-    void ensure(int size) {
-        if (memory.length < size) {
-            allocate(size - this.size);
-        }
-    }
-    
+    abstract void ensure(int size);
+
+    /**
+     * Returns the value at the given offset
+     * @param offset
+     * @return
+     */
+    abstract int get(int offset);
+
+    /**
+     * Returns the memory consumption in bytes
+     * @return
+     */
+    abstract long getByteSize();
+
     /**
-     * Replaces this buffer with the given buffer
+     * Returns a new, empty buffer of the same type
+     * @return
+     */
+    abstract JHPLBuffer newInstance();
+
+    /**
+     * Replaces this buffer with the given buffer, which must be of the same type
      * @param other
      */
-    void replace(JHPLBuffer other) {
-        this.memory = other.memory;
-        this.size = other.size;
-    }
+    abstract void replace(JHPLBuffer other);
+
+    /**
+     * Sets the value at the given offset
+     * @param offset
+     * @param value
+     */
+    abstract void set(int offset, int value);
 }
@@ -0,0 +1,113 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.util.Arrays;
+
+/**
+ * A simple buffer based on an int array
+ *
+ * @author Fabian Prasser
+ */
+class JHPLBufferHeap extends JHPLBuffer {
+
+    /** Constant*/
+    private static final double GROWTH_FACTOR      = 1.5d;
+    /** Constant*/
+    private static final int    INITIAL_CAPACITY   = 2;
+
+    /** The size of the array nodes */
+    private int                 size;
+    /** The array with nodes */
+    private int[]               memory;
+
+    /**
+     * Creates a new instance
+     */
+    JHPLBufferHeap(){
+        this.memory = new int[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    @Override
+    int allocate(int _size) {
+
+        // Store
+        int offset = size;
+        size += _size;
+
+        // Check, if we need to allocate more memory
+        if (size > memory.length) {
+
+            // Compute new length
+            int length = memory.length;
+            while (length < size) {
+                length = (int)((double)length * GROWTH_FACTOR);
+            }
+
+            // Grow
+            int[] newBuffer = new int[length];
+            System.arraycopy(memory, 0, newBuffer, 0, offset);
+            memory = newBuffer;
+        }
+
+        // New memory is in range offset to offset + _size
+        // No need to initialize, JVM will initialize with 0x0, which == FLAG_NOT_AVAILABLE
+
+        // Return
+        return offset;
+    }
+
+    @Override
+    int capacity() {
+        return memory.length;
+    }
+
+    @Override
+    void ensure(int size) {
+        if (memory.length < size) {
+            allocate(size - this.size);
+        }
+    }
+
+    @Override
+    int get(int offset) {
+        return memory[offset];
+    }
+
+    @Override
+    long getByteSize() {
+        return memory.length * 4L;
+    }
+
+    @Override
+    JHPLBuffer newInstance() {
+        return new JHPLBufferHeap();
+    }
+
+    @Override
+    void replace(JHPLBuffer other) {
+        JHPLBufferHeap _other = (JHPLBufferHeap) other;
+        this.memory = _other.memory;
+        this.size = _other.size;
+    }
+
+    @Override
+    void set(int offset, int value) {
+        memory[offset] = value;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(memory);
+    }
+}
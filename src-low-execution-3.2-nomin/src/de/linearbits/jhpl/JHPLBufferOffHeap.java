@@ -0,0 +1,203 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+
+/**
+ * A buffer that stores integers outside of the Java heap, either in direct byte buffers or in
+ * memory-mapped temporary files. Memory is organized in chunks that are never moved. Hence, offsets
+ * are stable and growing the buffer never copies data. The first chunks grow geometrically, starting
+ * with one page, which keeps the footprint of small buffers low. Beyond a threshold, chunks have a
+ * fixed size.
+ *
+ * @author Fabian Prasser
+ */
+class JHPLBufferOffHeap extends JHPLBuffer {
+
+    /** Constant: size of the first chunk */
+    private static final int   BASE_BITS       = 10;
+    /** Constant: size of chunks beyond the geometric part */
+    private static final int   FIXED_BITS      = 25;
+    /** Constant */
+    private static final int   FIXED_MASK      = (1 << FIXED_BITS) - 1;
+    /** Constant: number of chunks with geometrically growing sizes */
+    private static final int   GEOMETRIC       = FIXED_BITS - BASE_BITS + 1;
+    /** Constant: first offset stored in a chunk of fixed size */
+    private static final int   LIMIT           = (1 << BASE_BITS) * ((1 << GEOMETRIC) - 1);
+    /** Constant: maximal number of chunks */
+    private static final int   MAX_CHUNKS      = GEOMETRIC + (int) (((1L << 31) - LIMIT) >>> FIXED_BITS) + 1;
+    /** Constant: initial capacity of the array of chunks */
+    private static final int   INITIAL_CHUNKS  = 4;
+    /** Constant: size of each chunk */
+    private static final int[] SIZES           = new int[MAX_CHUNKS];
+    /** Constant: first offset stored in each chunk and, at the end, the capacity for all chunks */
+    private static final long[] STARTS         = new long[MAX_CHUNKS + 1];
+
+    static {
+        for (int i = 0; i < MAX_CHUNKS; i++) {
+            SIZES[i] = i < GEOMETRIC ? 1 << (BASE_BITS + i) : 1 << FIXED_BITS;
+            STARTS[i + 1] = STARTS[i] + SIZES[i];
+        }
+    }
+
+    /** The chunks */
+    private IntBuffer[]  chunks;
+    /** The number of chunks */
+    private int          numChunks;
+    /** Whether to use memory-mapped files */
+    private final boolean mapped;
+    /** The number of allocated integers */
+    private int          size;
+
+    /**
+     * Creates a new instance
+     * @param mapped Whether to use memory-mapped files instead of direct buffers
+     */
+    JHPLBufferOffHeap(boolean mapped) {
+        this.mapped = mapped;
+        this.chunks = new IntBuffer[INITIAL_CHUNKS];
+        this.numChunks = 0;
+        this.size = 0;
+    }
+
+    @Override
+    int allocate(int _size) {
+
+        // Store
+        int offset = size;
+        size += _size;
+
+        // Add chunks, if required. New memory is initialized with 0x0, which == FLAG_NOT_AVAILABLE
+        while (STARTS[numChunks] < size) {
+            if (numChunks == chunks.length) {
+                chunks = Arrays.copyOf(chunks, Math.min(chunks.length * 2, MAX_CHUNKS));
+            }
+            chunks[numChunks] = mapped ? map(SIZES[numChunks]) : allocateDirect(SIZES[numChunks]);
+            numChunks++;
+        }
+
+        // Return
+        return offset;
+    }
+
+    @Override
+    int capacity() {
+        return (int) Math.min(STARTS[numChunks], Integer.MAX_VALUE);
+    }
+
+    @Override
+    void ensure(int size) {
+        if (STARTS[numChunks] < size) {
+            allocate(size - this.size);
+        }
+    }
+
+    @Override
+    int get(int offset) {
+        int chunk = chunk(offset);
+        return chunks[chunk].get((int) (offset - STARTS[chunk]));
+    }
+
+    @Override
+    long getByteSize() {
+        return STARTS[numChunks] * 4L;
+    }
+
+    @Override
+    JHPLBuffer newInstance() {
+        return new JHPLBufferOffHeap(this.mapped);
+    }
+
+    @Override
+    void replace(JHPLBuffer other) {
+        JHPLBufferOffHeap _other = (JHPLBufferOffHeap) other;
+        this.chunks = _other.chunks;
+        this.numChunks = _other.numChunks;
+        this.size = _other.size;
+    }
+
+    @Override
+    void set(int offset, int value) {
+        int chunk = chunk(offset);
+        chunks[chunk].put((int) (offset - STARTS[chunk]), value);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("[");
+        for (int i = 0; i < size; i++) {
+            builder.append(i == 0 ? "" : ", ").append(get(i));
+        }
+        builder.append("]");
+        return builder.toString();
+    }
+
+    /**
+     * Allocates a direct buffer with the given number of integers
+     * @param size
+     * @return
+     */
+    private IntBuffer allocateDirect(int size) {
+        return ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    /**
+     * Returns the index of the chunk storing the given offset
+     * @param offset
+     * @return
+     */
+    private int chunk(int offset) {
+        if (offset < LIMIT) {
+            return 31 - Integer.numberOfLeadingZeros((offset >>> BASE_BITS) + 1);
+        } else {
+            return GEOMETRIC + ((offset - LIMIT) >>> FIXED_BITS);
+        }
+    }
+
+    /**
+     * Maps a temporary file with the given number of integers into memory. The file is deleted
+     * immediately, if supported by the operating system.
+     * @param size
+     * @return
+     */
+    private IntBuffer map(int size) {
+        File file = null;
+        RandomAccessFile raf = null;
+        try {
+            file = File.createTempFile("jhpl", ".buffer");
+            raf = new RandomAccessFile(file, "rw");
+            return raf.getChannel().map(MapMode.READ_WRITE, 0, size * 4L).order(ByteOrder.nativeOrder()).asIntBuffer();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot map memory", e);
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+            if (file != null && !file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+}
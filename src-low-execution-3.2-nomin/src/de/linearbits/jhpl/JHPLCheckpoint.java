@@ -0,0 +1,260 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import de.linearbits.jhpl.Lattice.Encoding;
+import de.linearbits.jhpl.PredictiveProperty.Direction;
+
+/**
+ * An immutable copy of the content of a lattice, which does not depend on the backends used for
+ * representing properties. All nodes are represented by their identifiers. Predictive properties are
+ * represented by the minimal or maximal elements stored for them, non-predictive properties by
+ * all nodes for which they have been stored.
+ *
+ * @author Fabian Prasser
+ */
+public class JHPLCheckpoint {
+
+    /** Constant */
+    private static final int  MAGIC = 0x4A48504C;
+
+    /** The heights of all dimensions */
+    private final int[]       heights;
+    /** The encoding of identifiers */
+    private final Encoding    encoding;
+    /** The nodes to which identifiers have been assigned, row-wise, if any */
+    private final int[]       dictionary;
+    /** The nodes stored in the lattice */
+    private final long[]      master;
+    /** The direction of each property */
+    private final Direction[] directions;
+    /** Upwards-predictive elements of each property, if any */
+    private final long[][]    up;
+    /** Downwards-predictive elements of each property, if any */
+    private final long[][]    down;
+    /** Nodes with each non-predictive property, if any */
+    private final long[][]    none;
+
+    /**
+     * Creates a new instance
+     * @param heights
+     * @param encoding
+     * @param dictionary
+     * @param master
+     * @param directions
+     * @param up
+     * @param down
+     * @param none
+     */
+    JHPLCheckpoint(int[] heights, Encoding encoding, int[] dictionary, long[] master, Direction[] directions, long[][] up, long[][] down, long[][] none) {
+        this.heights = heights;
+        this.encoding = encoding;
+        this.dictionary = dictionary;
+        this.master = master;
+        this.directions = directions;
+        this.up = up;
+        this.down = down;
+        this.none = none;
+    }
+
+    /**
+     * Reads a checkpoint
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    public static JHPLCheckpoint read(DataInput in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Invalid checkpoint");
+        }
+        int[] heights = new int[in.readInt()];
+        for (int i = 0; i < heights.length; i++) {
+            heights[i] = in.readInt();
+        }
+        Encoding encoding = Encoding.values()[in.readByte()];
+        int[] dictionary = null;
+        if (encoding == Encoding.SPARSE) {
+            dictionary = new int[in.readInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = in.readInt();
+            }
+        }
+        long[] master = readArray(in);
+        int properties = in.readInt();
+        Direction[] directions = new Direction[properties];
+        long[][] up = new long[properties][];
+        long[][] down = new long[properties][];
+        long[][] none = new long[properties][];
+        for (int i = 0; i < properties; i++) {
+            directions[i] = Direction.values()[in.readByte()];
+            up[i] = readArray(in);
+            down[i] = readArray(in);
+            none[i] = readArray(in);
+        }
+        return new JHPLCheckpoint(heights, encoding, dictionary, master, directions, up, down, none);
+    }
+
+    /**
+     * Reads an array, which may be null
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    private static long[] readArray(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        long[] result = new long[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = in.readLong();
+        }
+        return result;
+    }
+
+    /**
+     * Writes an array, which may be null
+     * @param out
+     * @param array
+     * @throws IOException
+     */
+    private static void writeArray(DataOutput out, long[] array) throws IOException {
+        if (array == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(array.length);
+        for (long value : array) {
+            out.writeLong(value);
+        }
+    }
+
+    /**
+     * Returns the encoding of identifiers
+     * @return
+     */
+    public Encoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Returns the number of nodes stored in the lattice
+     * @return
+     */
+    public int getNumNodes() {
+        return master.length;
+    }
+
+    /**
+     * Returns the number of properties
+     * @return
+     */
+    public int getNumProperties() {
+        return directions.length;
+    }
+
+    /**
+     * Writes this checkpoint
+     * @param out
+     * @throws IOException
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(heights.length);
+        for (int height : heights) {
+            out.writeInt(height);
+        }
+        out.writeByte(encoding.ordinal());
+        if (encoding == Encoding.SPARSE) {
+            out.writeInt(dictionary.length);
+            for (int value : dictionary) {
+                out.writeInt(value);
+            }
+        }
+        writeArray(out, master);
+        out.writeInt(directions.length);
+        for (int i = 0; i < directions.length; i++) {
+            out.writeByte(directions[i].ordinal());
+            writeArray(out, up[i]);
+            writeArray(out, down[i]);
+            writeArray(out, none[i]);
+        }
+    }
+
+    /**
+     * Checks whether this checkpoint matches the given lattice and properties
+     * @param heights
+     * @param encoding
+     * @param properties
+     */
+    void check(int[] heights, Encoding encoding, PredictiveProperty[] properties) {
+        if (!Arrays.equals(heights, this.heights) || encoding != this.encoding) {
+            throw new IllegalArgumentException("Checkpoint does not match the lattice");
+        }
+        if (properties.length != directions.length) {
+            throw new IllegalArgumentException("Checkpoint does not match the properties");
+        }
+        for (int i = 0; i < properties.length; i++) {
+            if (properties[i].getDirection() != directions[i]) {
+                throw new IllegalArgumentException("Checkpoint does not match the properties");
+            }
+        }
+    }
+
+    /**
+     * Returns the nodes to which identifiers have been assigned, row-wise, if any
+     * @return
+     */
+    int[] getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns the elements which are downwards-predictive for the property with the given index
+     * @param index
+     * @return
+     */
+    long[] getDown(int index) {
+        return down[index];
+    }
+
+    /**
+     * Returns the nodes stored in the lattice
+     * @return
+     */
+    long[] getMaster() {
+        return master;
+    }
+
+    /**
+     * Returns the nodes with the non-predictive property with the given index
+     * @param index
+     * @return
+     */
+    long[] getNone(int index) {
+        return none[index];
+    }
+
+    /**
+     * Returns the elements which are upwards-predictive for the property with the given index
+     * @param index
+     * @return
+     */
+    long[] getUp(int index) {
+        return up[index];
+    }
+}
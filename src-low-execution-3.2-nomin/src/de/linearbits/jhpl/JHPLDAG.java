@@ -0,0 +1,492 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * A trie in which identical subtries are stored only once, which turns it into a directed acyclic graph.
+ * In high-dimensional lattices, the subtries of upward- or downward-closed sets frequently repeat under
+ * many prefixes, e.g. "everything from level x upwards" in the trailing dimensions. All nodes except the
+ * root are immutable and interned in one hash table per dimension. They are reference-counted: put() and
+ * clear() create modified copies of the nodes on the affected paths and release nodes which are no longer
+ * referenced. The memory of released nodes is reused for new nodes of the same dimension. Each node is
+ * laid out as in a trie and followed by its reference count.
+ *
+ * @author Fabian Prasser
+ */
+class JHPLDAG extends JHPLTrie {
+
+    /** Constant */
+    private static final int   INITIAL_CAPACITY = 16;
+    /** Constant */
+    private static final float LOAD_FACTOR      = 0.75f;
+
+    /** Buffer for the children of new nodes, per dimension */
+    private final int[][]      children;
+    /** Released nodes, per dimension, linked via their reference counts */
+    private int[]              released;
+    /** Number of interned nodes, per dimension */
+    private int[]              sizes;
+    /** Interned nodes, per dimension, hash-indexed */
+    private int[][]            tables;
+    /** Whether we store minimal elements of an upwards-closed set */
+    private final boolean      upwards;
+
+    /**
+     * Constructs a new DAG
+     * @param lattice
+     * @param upwards Whether the DAG represents a property that is predictive for successors
+     */
+    JHPLDAG(Lattice<?, ?> lattice, boolean upwards) {
+        super(lattice, false, true);
+        this.upwards = upwards;
+        this.children = new int[dimensions][];
+        for (int i = 0; i < dimensions; i++) {
+            this.children[i] = new int[heights[i]];
+        }
+        this.released = new int[dimensions];
+        this.sizes = new int[dimensions];
+        this.tables = new int[dimensions][];
+        for (int i = 1; i < dimensions; i++) {
+            this.tables[i] = new int[INITIAL_CAPACITY];
+        }
+    }
+
+    /**
+     * Clears all elements above/below the given element. Only the root node is mutable,
+     * which is why this method must only be called for the root.
+     */
+    @Override
+    boolean clear(int[] element, int dimension, int offset) {
+
+        // Nothing to clear
+        if (!mayContain(element, dimension, offset)) {
+            return true;
+        }
+
+        // Replace children
+        int from = upwards ? element[dimension] : 0;
+        int to = upwards ? heights[dimension] - 1 : element[dimension];
+        for (int i = from; i <= to; i++) {
+            int child = buffer.get(offset + i);
+            if (child != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                if (dimension == dimensions - 1) {
+                    buffer.set(offset + i, JHPLBuffer.FLAG_NOT_AVAILABLE);
+                } else {
+                    replace(offset + i, remove(child, element, dimension + 1), dimension + 1);
+                }
+            }
+        }
+
+        // Update summary
+        if (summaries) {
+            resummarize(dimension, offset);
+        }
+
+        // Return
+        for (int i = offset; i < offset + heights[dimension]; i++) {
+            if (buffer.get(i) != JHPLBuffer.FLAG_NOT_AVAILABLE) { return true; }
+        }
+        return false;
+    }
+
+    @Override
+    boolean contains(int[] element, int dimension, int offset) {
+
+        if (dimension == dimensions) {
+            return true;
+        } else if (!(upwards ? mayContainLessOrEqual(element, dimension, offset) : mayContainGreaterOrEqual(element, dimension, offset))) {
+            return false;
+        } else {
+            int from = upwards ? 0 : element[dimension];
+            int to = upwards ? element[dimension] : heights[dimension] - 1;
+            for (int i = from; i <= to; i++) {
+                int pointer = buffer.get(offset + i);
+                if (pointer != JHPLBuffer.FLAG_NOT_AVAILABLE && contains(element, dimension + 1, pointer)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    void contains(long[] ids, int n, boolean[] result) {
+        Arrays.fill(result, 0, n, false);
+        containsBatch(decode(ids, n), n, upwards, result);
+    }
+
+    @Override
+    void compactify() {
+        Iterator<int[]> iterator = this.iterator();
+        JHPLDAG other = new JHPLDAG(this.lattice, this.upwards);
+        int[] element = iterator.next();
+        while (element != null) {
+            other.put(element);
+            element = iterator.next();
+        }
+        this.buffer.replace(other.buffer);
+        this.used = other.used;
+        this.released = other.released;
+        this.sizes = other.sizes;
+        this.tables = other.tables;
+    }
+
+    @Override
+    long getByteSize() {
+        long size = this.buffer.getByteSize();
+        for (int i = 1; i < dimensions; i++) {
+            size += tables[i].length * 4L;
+        }
+        return size;
+    }
+
+    /**
+     * Puts an element into this DAG. Only the root node is mutable, which is why this method
+     * must only be called for the root.
+     */
+    @Override
+    void put(int[] element, int dimension, int offset) {
+
+        if (summaries) {
+            summarize(element, dimension, offset);
+        }
+        offset += element[dimension];
+
+        if (dimension == dimensions - 1) {
+            buffer.set(offset, JHPLBuffer.FLAG_AVAILABLE);
+        } else {
+            replace(offset, insert(buffer.get(offset), element, dimension + 1), dimension + 1);
+        }
+    }
+
+    @Override
+    JHPLTrie newInstance() {
+        return new JHPLDAG(this.lattice, this.upwards);
+    }
+
+    /**
+     * Allocates a node of the given dimension
+     * @param dimension
+     * @return
+     */
+    private int allocate(int dimension) {
+        int size = getNodeSize(dimension) + 1;
+        used += size;
+        int node = released[dimension];
+        if (node != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+            released[dimension] = buffer.get(node + size - 1);
+            return node;
+        }
+        return buffer.allocate(size);
+    }
+
+    /**
+     * Returns whether the node with the given offset has the given children
+     * @param node
+     * @param children
+     * @param dimension
+     * @return
+     */
+    private boolean equals(int node, int[] children, int dimension) {
+        for (int i = 0; i < heights[dimension]; i++) {
+            if (buffer.get(node + i) != children[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes the given children
+     * @param children
+     * @param dimension
+     * @return
+     */
+    private int hash(int[] children, int dimension) {
+        long hash = dimension;
+        for (int i = 0; i < heights[dimension]; i++) {
+            hash = hash * 31 + children[i];
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Hashes the children of the node with the given offset
+     * @param node
+     * @param dimension
+     * @return
+     */
+    private int hash(int node, int dimension) {
+        long hash = dimension;
+        for (int i = 0; i < heights[dimension]; i++) {
+            hash = hash * 31 + buffer.get(node + i);
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Returns the offset of the node with the given dimension and children. The node is
+     * created, if it does not exist. Returns FLAG_NOT_AVAILABLE if there are no children.
+     * @param children
+     * @param dimension
+     * @return
+     */
+    private int intern(int[] children, int dimension) {
+
+        // Empty
+        boolean empty = true;
+        for (int i = 0; i < heights[dimension] && empty; i++) {
+            empty = children[i] == JHPLBuffer.FLAG_NOT_AVAILABLE;
+        }
+        if (empty) {
+            return JHPLBuffer.FLAG_NOT_AVAILABLE;
+        }
+
+        // Lookup
+        int slot = slotFor(children, dimension);
+        if (tables[dimension][slot] != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+            return tables[dimension][slot];
+        }
+
+        // Create
+        int node = allocate(dimension);
+        for (int i = 0; i < heights[dimension]; i++) {
+            buffer.set(node + i, children[i]);
+            if (dimension < dimensions - 1 && children[i] != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                retain(children[i], dimension + 1);
+            }
+        }
+        if (summaries) {
+            resummarize(dimension, node);
+        }
+        buffer.set(node + getNodeSize(dimension), 0);
+
+        // Register
+        if (sizes[dimension] == (int) (tables[dimension].length * LOAD_FACTOR)) {
+            rehash(dimension, tables[dimension].length * 2);
+            slot = slotFor(children, dimension);
+        }
+        tables[dimension][slot] = node;
+        sizes[dimension]++;
+        return node;
+    }
+
+    /**
+     * Returns the offset of a node with the given node's children and the given element
+     * @param node
+     * @param element
+     * @param dimension
+     * @return
+     */
+    private int insert(int node, int[] element, int dimension) {
+        int[] children = load(node, dimension);
+        int index = element[dimension];
+        if (dimension == dimensions - 1) {
+            children[index] = JHPLBuffer.FLAG_AVAILABLE;
+        } else {
+            children[index] = insert(children[index], element, dimension + 1);
+        }
+        return intern(children, dimension);
+    }
+
+    /**
+     * Loads the children of the given node into the buffer for the given dimension
+     * @param node
+     * @param dimension
+     * @return
+     */
+    private int[] load(int node, int dimension) {
+        int[] result = children[dimension];
+        if (node == JHPLBuffer.FLAG_NOT_AVAILABLE) {
+            Arrays.fill(result, JHPLBuffer.FLAG_NOT_AVAILABLE);
+        } else {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = buffer.get(node + i);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether the subtrie of the given node may contain elements which are to be cleared
+     * @param element
+     * @param dimension
+     * @param offset
+     * @return
+     */
+    private boolean mayContain(int[] element, int dimension, int offset) {
+        return upwards ? mayContainGreaterOrEqual(element, dimension, offset) : mayContainLessOrEqual(element, dimension, offset);
+    }
+
+    /**
+     * Finalizes a hash
+     * @param hash
+     * @return
+     */
+    private int mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+
+    /**
+     * Rehashes all nodes of the given dimension into a table with the given capacity
+     * @param dimension
+     * @param capacity
+     */
+    private void rehash(int dimension, int capacity) {
+        int[] old = tables[dimension];
+        int[] table = new int[capacity];
+        int mask = capacity - 1;
+        for (int node : old) {
+            if (node != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                int slot = hash(node, dimension) & mask;
+                while (table[slot] != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = node;
+            }
+        }
+        tables[dimension] = table;
+    }
+
+    /**
+     * Decrements the reference count of the given node. If it is no longer referenced,
+     * the node is unregistered, its children are released and its memory is reused.
+     * @param node
+     * @param dimension
+     */
+    private void release(int node, int dimension) {
+        int pointer = node + getNodeSize(dimension);
+        int references = buffer.get(pointer) - 1;
+        if (references > 0) {
+            buffer.set(pointer, references);
+            return;
+        }
+        unregister(node, dimension);
+        if (dimension < dimensions - 1) {
+            for (int i = 0; i < heights[dimension]; i++) {
+                int child = buffer.get(node + i);
+                if (child != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                    release(child, dimension + 1);
+                }
+            }
+        }
+        buffer.set(pointer, released[dimension]);
+        released[dimension] = node;
+        used -= getNodeSize(dimension) + 1;
+    }
+
+    /**
+     * Returns the offset of a node with the given node's children, without all elements above/below
+     * the given element
+     * @param node
+     * @param element
+     * @param dimension
+     * @return
+     */
+    private int remove(int node, int[] element, int dimension) {
+        if (!mayContain(element, dimension, node)) {
+            return node;
+        }
+        int[] children = load(node, dimension);
+        int from = upwards ? element[dimension] : 0;
+        int to = upwards ? heights[dimension] - 1 : element[dimension];
+        for (int i = from; i <= to; i++) {
+            if (children[i] != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                children[i] = dimension == dimensions - 1 ? JHPLBuffer.FLAG_NOT_AVAILABLE : remove(children[i], element, dimension + 1);
+            }
+        }
+        return intern(children, dimension);
+    }
+
+    /**
+     * Replaces the pointer at the given offset of the root node
+     * @param offset
+     * @param node
+     * @param dimension The dimension of the node
+     */
+    private void replace(int offset, int node, int dimension) {
+        int previous = buffer.get(offset);
+        if (previous == node) {
+            return;
+        }
+        if (node != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+            retain(node, dimension);
+        }
+        buffer.set(offset, node);
+        if (previous != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+            release(previous, dimension);
+        }
+    }
+
+    /**
+     * Increments the reference count of the given node
+     * @param node
+     * @param dimension
+     */
+    private void retain(int node, int dimension) {
+        int pointer = node + getNodeSize(dimension);
+        buffer.set(pointer, buffer.get(pointer) + 1);
+    }
+
+    /**
+     * Returns the slot of the node with the given children or the empty slot at which it would be inserted
+     * @param children
+     * @param dimension
+     * @return
+     */
+    private int slotFor(int[] children, int dimension) {
+        int[] table = tables[dimension];
+        int mask = table.length - 1;
+        int slot = hash(children, dimension) & mask;
+        while (table[slot] != JHPLBuffer.FLAG_NOT_AVAILABLE && !equals(table[slot], children, dimension)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Removes the given node from the table of its dimension. Subsequent nodes of the same cluster
+     * are shifted backwards, which keeps probing sequences intact.
+     * @param node
+     * @param dimension
+     */
+    private void unregister(int node, int dimension) {
+        int[] table = tables[dimension];
+        int mask = table.length - 1;
+        int slot = hash(node, dimension) & mask;
+        while (table[slot] != node) {
+            slot = (slot + 1) & mask;
+        }
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            int other = table[next];
+            if (other == JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                break;
+            }
+            int home = hash(other, dimension) & mask;
+            // Move, if the home of the node is not within (slot, next]
+            if (slot <= next ? (home <= slot || home > next) : (home <= slot && home > next)) {
+                table[slot] = other;
+                slot = next;
+            }
+        }
+        table[slot] = JHPLBuffer.FLAG_NOT_AVAILABLE;
+        sizes[dimension]--;
+    }
+}
@@ -42,7 +42,8 @@ class JHPLData<T, U> {
      * @return
      */
     U get(int[] node) {
-        return get(space.toId(node));
+        long id = space.findId(node);
+        return id == -1L ? null : get(id);
     }
     
     /**
@@ -0,0 +1,264 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.util.Arrays;
+
+/**
+ * Assigns identifiers to nodes in the order in which they are requested for the first time. This makes it
+ * possible to work with lattices that have more nodes than can be represented by computed identifiers,
+ * as long as only a fraction of them is ever touched. Nodes are stored row-wise in a single
+ * <code>int[]</code>, the map from nodes to identifiers is implemented using open addressing with
+ * linear probing.
+ *
+ * @author Fabian Prasser
+ */
+class JHPLDictionary {
+
+    /** Constant */
+    private static final int   EMPTY            = -1;
+    /** Constant */
+    private static final int   INITIAL_CAPACITY = 64;
+    /** Constant */
+    private static final float LOAD_FACTOR      = 0.75f;
+
+    /** The number of dimensions */
+    private final int          dimensions;
+    /** A buffer for deriving neighbours */
+    private final int[]        buffer;
+    /** The nodes, row-wise */
+    private int[]              rows;
+    /** Hash-indexed identifiers */
+    private int[]              slots;
+    /** The number of nodes */
+    private int                size;
+    /** Number of nodes at which the arrays are grown */
+    private int                threshold;
+
+    /**
+     * Creates a new instance
+     * @param dimensions
+     */
+    JHPLDictionary(int dimensions) {
+        this.dimensions = dimensions;
+        this.buffer = new int[dimensions];
+        this.rows = new int[INITIAL_CAPACITY * dimensions];
+        this.allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns whether an identifier has been assigned
+     * @param id
+     * @return
+     */
+    boolean contains(long id) {
+        return id >= 0 && id < size;
+    }
+
+    /**
+     * Decodes the given identifier into the given array
+     * @param id
+     * @param result
+     * @return
+     */
+    int[] decode(long id, int[] result) {
+        System.arraycopy(rows, (int) id * dimensions, result, 0, dimensions);
+        return result;
+    }
+
+    /**
+     * Returns the index of the node with the given identifier in the given dimension
+     * @param id
+     * @param dimension
+     * @return
+     */
+    int get(long id, int dimension) {
+        return rows[(int) id * dimensions + dimension];
+    }
+
+    /**
+     * Returns the memory consumption in bytes
+     * @return
+     */
+    long getByteSize() {
+        return rows.length * 4L + slots.length * 4L;
+    }
+
+    /**
+     * Returns the level of the node with the given identifier
+     * @param id
+     * @return
+     */
+    int getLevel(long id) {
+        int level = 0;
+        int offset = (int) id * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            level += rows[offset + i];
+        }
+        return level;
+    }
+
+    /**
+     * Returns the identifier of the node which differs from the given node by the given
+     * delta in the given dimension
+     * @param id
+     * @param dimension
+     * @param delta
+     * @return
+     */
+    long getNeighbour(long id, int dimension, int delta) {
+        decode(id, buffer);
+        buffer[dimension] += delta;
+        return toId(buffer);
+    }
+
+    /**
+     * Returns all nodes, row-wise
+     * @return
+     */
+    int[] getRows() {
+        return Arrays.copyOf(rows, size * dimensions);
+    }
+
+    /**
+     * Restores the given nodes, row-wise. Nodes which have already been assigned
+     * must form a prefix of the given nodes.
+     * @param rows
+     */
+    void restore(int[] rows) {
+        int count = rows.length / dimensions;
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(rows, i * dimensions, buffer, 0, dimensions);
+            if (toId(buffer) != i) {
+                throw new IllegalArgumentException("Checkpoint does not match the lattice");
+            }
+        }
+    }
+
+    /**
+     * Returns the number of nodes
+     * @return
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the identifier of the given node, or -1 if none has been assigned. Does not assign
+     * an identifier.
+     * @param node
+     * @return
+     */
+    long find(int[] node) {
+        int slot = slotFor(node);
+        return slots[slot] != EMPTY ? slots[slot] : -1L;
+    }
+
+    /**
+     * Returns the identifier of the given node, which is assigned if necessary
+     * @param node
+     * @return
+     */
+    long toId(int[] node) {
+        int slot = slotFor(node);
+        if (slots[slot] != EMPTY) {
+            return slots[slot];
+        }
+        if (size == threshold) {
+            rehash(slots.length * 2);
+            slot = slotFor(node);
+        }
+        int offset = size * dimensions;
+        if (offset + dimensions > rows.length) {
+            if (rows.length > Integer.MAX_VALUE / 2) {
+                throw new IllegalStateException("Too many nodes");
+            }
+            rows = Arrays.copyOf(rows, rows.length * 2);
+        }
+        System.arraycopy(node, 0, rows, offset, dimensions);
+        slots[slot] = size;
+        return size++;
+    }
+
+    /**
+     * Allocates the hash table for the given capacity
+     * @param capacity
+     */
+    private void allocate(int capacity) {
+        this.slots = new int[capacity];
+        Arrays.fill(this.slots, EMPTY);
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Returns whether the node with the given identifier equals the given node
+     * @param id
+     * @param node
+     * @return
+     */
+    private boolean equals(int id, int[] node) {
+        int offset = id * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            if (rows[offset + i] != node[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes the given node
+     * @param node
+     * @param offset
+     * @return
+     */
+    private int hash(int[] node, int offset) {
+        long hash = 0;
+        for (int i = 0; i < dimensions; i++) {
+            hash = hash * 31 + node[offset + i];
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return (int) hash;
+    }
+
+    /**
+     * Rehashes all nodes into a table with the given capacity
+     * @param capacity
+     */
+    private void rehash(int capacity) {
+        this.allocate(capacity);
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hash(rows, id * dimensions) & mask;
+            while (slots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id;
+        }
+    }
+
+    /**
+     * Returns the slot of the given node or the empty slot at which it would be inserted
+     * @param node
+     * @return
+     */
+    private int slotFor(int[] node) {
+        int mask = slots.length - 1;
+        int slot = hash(node, 0) & mask;
+        while (slots[slot] != EMPTY && !equals(slots[slot], node)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
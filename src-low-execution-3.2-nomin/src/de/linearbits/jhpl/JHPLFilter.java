@@ -0,0 +1,135 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+/**
+ * A register-blocked Bloom filter for identifiers. All bits for a key are stored in a single
+ * <code>long</code>, which means that each operation touches exactly one word of memory. The filter
+ * answers "no" for keys that have never been inserted with certainty and "maybe" otherwise.
+ * Keys cannot be removed.
+ *
+ * @author Fabian Prasser
+ */
+class JHPLFilter {
+
+    /** Constant: number of bits per expected key */
+    private static final int BITS_PER_KEY     = 16;
+    /** Constant: number of bits set per key */
+    private static final int BITS_SET_PER_KEY = 4;
+    /** Constant: minimal capacity */
+    private static final int MIN_CAPACITY     = 64;
+    /** Constant: maximal capacity */
+    private static final int MAX_CAPACITY     = 1 << 30;
+
+    /** The expected number of keys */
+    private final int        capacity;
+    /** The words */
+    private final long[]     words;
+    /** Mask for computing the index of words */
+    private final int        mask;
+    /** The number of distinct keys that have been inserted, approximately */
+    private int              size;
+
+    /**
+     * Creates a new filter for the given expected number of keys
+     * @param capacity
+     */
+    JHPLFilter(long capacity) {
+        int _capacity = MIN_CAPACITY;
+        while (_capacity < capacity && _capacity < MAX_CAPACITY) {
+            _capacity <<= 1;
+        }
+        this.capacity = _capacity;
+        this.words = new long[(int) ((long) _capacity * BITS_PER_KEY / 64)];
+        this.mask = this.words.length - 1;
+        this.size = 0;
+    }
+
+    /**
+     * Returns the expected number of keys
+     * @return
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the memory consumption in bytes
+     * @return
+     */
+    long getByteSize() {
+        return this.words.length * 8L;
+    }
+
+    /**
+     * Returns whether the filter holds more keys than it has been sized for
+     * @return
+     */
+    boolean isSaturated() {
+        return size > capacity;
+    }
+
+    /**
+     * Returns whether the given key may have been inserted. Returns false only
+     * if the key has never been inserted.
+     * @param key
+     * @return
+     */
+    boolean mayContain(long key) {
+        long hash = hash(key);
+        long bits = bits(hash);
+        return (words[(int) (hash >>> 32) & mask] & bits) == bits;
+    }
+
+    /**
+     * Inserts the given key
+     * @param key
+     */
+    void put(long key) {
+        long hash = hash(key);
+        long bits = bits(hash);
+        int index = (int) (hash >>> 32) & mask;
+        long word = words[index];
+        if ((word & bits) != bits) {
+            words[index] = word | bits;
+            size++;
+        }
+    }
+
+    /**
+     * Returns the bits for the given hash code
+     * @param hash
+     * @return
+     */
+    private long bits(long hash) {
+        long bits = 0L;
+        for (int i = 0; i < BITS_SET_PER_KEY; i++) {
+            bits |= 1L << (hash & 63);
+            hash >>>= 6;
+        }
+        return bits;
+    }
+
+    /**
+     * Hashes a long. This is the finalizer of MurmurHash3.
+     * @param key
+     * @return
+     */
+    private long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb3fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,360 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.util.Arrays;
+
+/**
+ * A hash map of <code>long</code> to a primitive <code>long</code> bitfield, implemented using open addressing
+ * with quadratic collision resolution. Each bit represents one non-predictive property, which means that all
+ * such properties of a node can be queried with a single probe.
+ *
+ * This class is adopted from the HPPC project and was originally released under LGPL.
+ */
+class JHPLFlags {
+
+    /**  A marker for an assigned slot in {@link #keys}, stored in {@link #states}.  */
+    public final static byte  ASSIGNED            = 2;
+
+    /** Default capacity. */
+    public final static int   DEFAULT_CAPACITY    = 16;
+
+    /** Default load factor. */
+    public final static float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    /**  A marker for a deleted slot in {@link #keys}, stored in {@link #states}.  */
+    public final static byte  DELETED             = 1;
+
+    /** A marker for an empty slot in {@link #keys}, stored in {@link #states}.  */
+    public final static byte  EMPTY               = 0;
+
+    /** The maximal number of flags */
+    public final static int   MAX_FLAGS           = 64;
+
+    /** Minimum capacity for the map. */
+    public final static int   MIN_CAPACITY        = 4;
+
+    /** Cached number of assigned slots in {@link #states}. */
+    public int                assigned;
+
+    /** Cached number of deleted slots in {@link #states}. */
+    public int                deleted;
+
+    /** Hash-indexed array holding all keys.*/
+    public long[]             keys;
+
+    /** The load factor for this map (fraction of allocated or deleted slots before the buffers must be rehashed or reallocated). */
+    public final float        loadFactor;
+
+    /**  Each entry (slot) in the {@link #values} table has an associated state information ({@link #EMPTY}, {@link #ASSIGNED} or {@link #DELETED}). */
+    public byte[]             states;
+
+    /** Hash-indexed array holding all bitfields associated to the keys stored in {@link #keys}. */
+    public long[]             values;
+
+    /** Cached capacity threshold at which we must resize the buffers.  */
+    private int               resizeThreshold;
+
+    /**
+     * Constructs a new instance
+     */
+    JHPLFlags() {
+        this.loadFactor = DEFAULT_LOAD_FACTOR;
+        this.allocateBuffers(roundCapacity(DEFAULT_CAPACITY));
+    }
+
+    /**
+     * Allocate internal buffers for a given capacity.
+     *
+     * @param capacity New capacity (must be a power of two).
+     */
+    private void allocateBuffers(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new long[capacity];
+        this.states = new byte[capacity];
+        this.resizeThreshold = (int) (capacity * loadFactor);
+    }
+
+    /**
+     * Expand the internal storage buffers (capacity) or rehash current
+     * keys and values if there are a lot of deleted slots.
+     */
+    private void expandAndRehash() {
+        if (assigned >= resizeThreshold) {
+            rehash(nextCapacity(keys.length));
+        } else {
+            rehash(this.values.length);
+        }
+    }
+
+    /**
+     * Rehashes all keys and values into buffers with the given capacity.
+     *
+     * @param capacity New capacity (must be a power of two).
+     */
+    private void rehash(int capacity) {
+        final long[] oldKeys = this.keys;
+        final long[] oldValues = this.values;
+        final byte[] oldStates = this.states;
+
+        allocateBuffers(capacity);
+
+        /*
+         * Rehash all assigned slots from the old hash table. Deleted
+         * slots are discarded.
+         */
+        for (int i = 0; i < oldStates.length; i++) {
+            if (oldStates[i] == ASSIGNED) {
+                final int slot = slotFor(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                states[slot] = ASSIGNED;
+            }
+        }
+
+        /*
+         * The number of assigned items does not change, the number of deleted
+         * items is zero since we have resized.
+         */
+        deleted = 0;
+    }
+
+    /** Hashes an 8-byte sequence (Java long). */
+    private int hash(long v) {
+        final int M = 0x5bd1e995;
+        final int R = 24;
+        final int SEED = 0xdeadbeef;
+
+        int k = (int) (v >>> 32);
+        k *= M;
+        k ^= k >>> R;
+        k *= M;
+
+        int h = SEED * M;
+        h ^= k;
+
+        k = (int) v;
+        k *= M;
+        k ^= k >>> R;
+        k *= M;
+        h *= M;
+        h ^= k;
+
+        h ^= h >>> 13;
+        h *= M;
+        h ^= h >>> 15;
+
+        return h;
+    }
+
+    /**
+     * Return the next possible capacity, counting from the current buffers'
+     * size.
+     */
+    private int nextCapacity(int current) {
+        assert current > 0 && Long.bitCount(current) == 1 : "Capacity must be a power of two.";
+        assert ((current << 1) > 0) : "Maximum capacity exceeded (" + (0x80000000 >>> 1) + ").";
+        if (current < MIN_CAPACITY / 2) current = MIN_CAPACITY / 2;
+        return current << 1;
+    }
+
+    /** returns the next highest power of two, or the current value if it's already a power of two or zero*/
+    private int nextHighestPowerOfTwo(int v) {
+        v--;
+        v |= v >> 1;
+        v |= v >> 2;
+        v |= v >> 4;
+        v |= v >> 8;
+        v |= v >> 16;
+        v++;
+        return v;
+    }
+
+    /**
+     * Round the capacity to the next allowed value.
+     */
+    private int roundCapacity(int requestedCapacity) {
+        // Maximum positive integer that is a power of two.
+        if (requestedCapacity > (0x80000000 >>> 1)) return (0x80000000 >>> 1);
+        return Math.max(MIN_CAPACITY, nextHighestPowerOfTwo(requestedCapacity));
+    }
+
+    /**
+     * Lookup the slot index for <code>key</code>. See {@link JHPLMap} for details
+     * on the probing sequence.
+     */
+    private int slotFor(long key) {
+        final int slots = states.length;
+        final int bucketMask = (slots - 1);
+
+        int slot = hash(key) & bucketMask;
+        int i = 0;
+        int deletedSlot = -1;
+
+        while (true) {
+            final int state = states[slot];
+
+            if (state == JHPLFlags.EMPTY) return deletedSlot != -1 ? deletedSlot : slot;
+            if (state == JHPLFlags.ASSIGNED && (keys[slot] == key)) { return slot; }
+            if (state == JHPLFlags.DELETED && deletedSlot < 0) deletedSlot = slot;
+
+            slot = (slot + (++i)) & bucketMask;
+        }
+    }
+
+    /**
+     * Clears the given flags for the given key. Removes the key, if no flags remain.
+     * @param key
+     * @param mask
+     */
+    void clear(long key, long mask) {
+        final int slot = slotFor(key);
+        if (states[slot] == ASSIGNED) {
+            long value = values[slot] & ~mask;
+            if (value == 0L) {
+                values[slot] = 0L;
+                states[slot] = DELETED;
+                assigned--;
+                deleted++;
+            } else {
+                values[slot] = value;
+            }
+        }
+    }
+
+    /**
+     * Clears the given flags for all keys of nodes up to the given level. Removes keys, if no flags remain.
+     * @param mask
+     * @param nodes
+     * @param level
+     */
+    void clear(long mask, JHPLNodes<?> nodes, int level) {
+        for (int slot = 0; slot < states.length; slot++) {
+            if (states[slot] == ASSIGNED && (values[slot] & mask) != 0L && nodes.getLevel(keys[slot]) <= level) {
+                long value = values[slot] & ~mask;
+                if (value == 0L) {
+                    values[slot] = 0L;
+                    states[slot] = DELETED;
+                    assigned--;
+                    deleted++;
+                } else {
+                    values[slot] = value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears the map
+     */
+    void clear() {
+        assigned = deleted = 0;
+        Arrays.fill(states, EMPTY);
+        Arrays.fill(values, 0L);
+    }
+
+    /**
+     * Shrinks the internal buffers to the smallest capacity that can hold all assigned keys. Deleted
+     * slots are discarded.
+     */
+    void compact() {
+        int capacity = roundCapacity((int) Math.ceil((assigned + 1) / loadFactor));
+        if (capacity < keys.length || deleted != 0) {
+            rehash(capacity);
+        }
+    }
+
+    /**
+     * Returns the bitfield associated with the given key, 0 if there is none
+     * @param key
+     * @return
+     */
+    long get(long key) {
+        final int slot = slotFor(key);
+        return states[slot] == ASSIGNED ? values[slot] : 0L;
+    }
+
+    /**
+     * Returns the memory consumption in bytes
+     * @return
+     */
+    long getByteSize() {
+        return this.keys.length * 8L + this.values.length * 8L + this.states.length;
+    }
+
+    /**
+     * Returns the memory consumption in bytes of a compacted map with the given number of keys
+     * @param size
+     * @return
+     */
+    long getByteSize(int size) {
+        return roundCapacity((int) Math.ceil((size + 1) / loadFactor)) * 17L;
+    }
+
+    /**
+     * Counts the keys on each level up to the given level which would be removed by clearing the given flags 
+     * @param mask
+     * @param nodes
+     * @param level
+     * @return
+     */
+    int[] getRemovable(long mask, JHPLNodes<?> nodes, int level) {
+        int[] result = new int[level + 1];
+        for (int slot = 0; slot < states.length; slot++) {
+            if (states[slot] == ASSIGNED && (values[slot] & mask) != 0L && (values[slot] & ~mask) == 0L) {
+                int _level = nodes.getLevel(keys[slot]);
+                if (_level <= level) {
+                    result[_level]++;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether the map is empty
+     * @return
+     */
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Sets the given flags for the given key
+     * @param key
+     * @param mask
+     */
+    void set(long key, long mask) {
+        if (assigned + deleted >= resizeThreshold) expandAndRehash();
+
+        final int slot = slotFor(key);
+        final byte state = states[slot];
+
+        if (state != ASSIGNED) {
+            assigned++;
+            values[slot] = 0L;
+        }
+        if (state == DELETED) deleted--;
+
+        keys[slot] = key;
+        values[slot] |= mask;
+        states[slot] = ASSIGNED;
+    }
+
+    /**
+     * Size
+     * @return
+     */
+    int size() {
+        return assigned;
+    }
+}
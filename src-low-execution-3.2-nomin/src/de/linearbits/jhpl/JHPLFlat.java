@@ -0,0 +1,99 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.util.Arrays;
+
+/**
+ * This class stores an antichain in a flat integer array. Elements are stored consecutively,
+ * removed elements are replaced with the last element to keep the array dense.
+ *
+ * @author Fabian Prasser
+ */
+class JHPLFlat extends JHPLAntichain {
+
+    /** Constant */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /** Elements */
+    private int[]            memory;
+    /** Number of elements */
+    private int              size;
+
+    /**
+     * Constructs a new instance
+     * @param lattice
+     * @param upwards
+     */
+    JHPLFlat(Lattice<?, ?> lattice, boolean upwards) {
+        super(lattice, upwards);
+        this.memory = new int[INITIAL_CAPACITY * dimensions];
+        this.size = 0;
+    }
+
+    @Override
+    boolean clear(int[] element, int dimension, int offset) {
+        boolean deleted = false;
+        offset = 0;
+        while (offset < size * dimensions) {
+            if (upwards ? isGreaterOrEqual(memory, offset, element) : isLessOrEqual(memory, offset, element)) {
+                size--;
+                System.arraycopy(memory, size * dimensions, memory, offset, dimensions);
+                deleted = true;
+            } else {
+                offset += dimensions;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    boolean contains(int[] element, int dimension, int offset) {
+        int end = size * dimensions;
+        for (offset = 0; offset < end; offset += dimensions) {
+            if (upwards ? isLessOrEqual(memory, offset, element) : isGreaterOrEqual(memory, offset, element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    void get(int index, int[] element) {
+        System.arraycopy(memory, index * dimensions, element, 0, dimensions);
+    }
+
+    @Override
+    long getByteSize() {
+        return this.memory.length * 4L;
+    }
+
+    @Override
+    JHPLTrie newInstance() {
+        return new JHPLFlat(this.lattice, this.upwards);
+    }
+
+    @Override
+    void put(int[] element, int dimension, int offset) {
+        offset = size * dimensions;
+        if (offset + dimensions > memory.length) {
+            memory = Arrays.copyOf(memory, memory.length * 2);
+        }
+        System.arraycopy(element, 0, memory, offset, dimensions);
+        size++;
+    }
+
+    @Override
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,549 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+
+import de.linearbits.jhpl.JHPLIterator.LongIterator;
+import de.linearbits.jhpl.JHPLStack.IntegerStack;
+
+/**
+ * This class implements a k-d tree storing the antichain of minimal (upwards) or maximal (downwards)
+ * elements of a predictive property. Queries are answered as orthogonal dominance range-emptiness
+ * queries. Each node stores the bounding box of its subtree, which is used to prune queries and
+ * clear operations. The tree is materialized in a backing integer array. Each node consists of
+ * pointers to its children, flags, the element and its bounding box. Removed elements are marked
+ * as deleted and the tree is rebuilt in a balanced manner when it degenerates.
+ *
+ * @author Fabian Prasser
+ */
+class JHPLKDTree extends JHPLTrie {
+
+    /** Constant */
+    private static final int FLAG_DELETED   = 0x1;
+    /** Constant */
+    private static final int OFFSET_ELEMENT = 3;
+    /** Constant */
+    private static final int OFFSET_FLAGS   = 2;
+    /** Constant */
+    private static final int OFFSET_LEFT    = 0;
+    /** Constant */
+    private static final int OFFSET_RIGHT   = 1;
+
+    /** Number of elements after the last rebuild */
+    private int              balanced;
+    /** Number of deleted elements */
+    private int              deleted;
+    /** Offset of the bounding box in a node */
+    private final int        offsetBox;
+    /** Size of a node */
+    private final int        nodeSize;
+    /** Stack for traversals */
+    private IntegerStack     stack;
+    /** Root node */
+    private int              root;
+    /** Number of elements, including deleted elements */
+    private int              size;
+    /** Whether we store minimal elements of an upwards-closed set */
+    private final boolean    upwards;
+
+    /**
+     * Constructs a new tree
+     * @param lattice
+     * @param upwards Whether the tree represents a property that is predictive for successors
+     */
+    JHPLKDTree(Lattice<?, ?> lattice, boolean upwards) {
+        super(lattice);
+        this.upwards = upwards;
+        this.offsetBox = OFFSET_ELEMENT + dimensions;
+        this.nodeSize = offsetBox + (summaries ? dimensions : 0);
+        this.clearAll();
+    }
+
+    @Override
+    boolean clear(int[] element, int dimension, int offset) {
+
+        // Check
+        if (offset == JHPLBuffer.FLAG_NOT_AVAILABLE) {
+            return false;
+        }
+
+        // The depth of the tree is not bounded, so we traverse it with an explicit stack of
+        // pairs of dimensions and offsets. A negated offset marks a node whose children have
+        // already been processed.
+        IntegerStack stack = getStack(4);
+        stack.push(dimension);
+        stack.push(offset);
+        while (!stack.empty()) {
+            int node = stack.pop();
+            int split = stack.pop();
+
+            // Update bounding box
+            if (node < 0) {
+                resummarize(-node);
+                continue;
+            }
+
+            // Check
+            if (!(upwards ? mayContainGreaterOrEqual(element, node) : mayContainLessOrEqual(element, node))) {
+                continue;
+            }
+
+            // Node
+            if ((buffer.get(node + OFFSET_FLAGS) & FLAG_DELETED) == 0 &&
+                (upwards ? isGreaterOrEqual(node, element) : isLessOrEqual(node, element))) {
+                buffer.set(node + OFFSET_FLAGS, buffer.get(node + OFFSET_FLAGS) | FLAG_DELETED);
+                deleted++;
+            }
+            if (summaries) {
+                stack.push(split);
+                stack.push(-node);
+            }
+
+            // Children
+            int next = split + 1 == dimensions ? 0 : split + 1;
+            int value = buffer.get(node + OFFSET_ELEMENT + split);
+            if (!upwards || element[split] < value) {
+                push(stack, next, buffer.get(node + OFFSET_LEFT));
+            }
+            if (upwards || value <= element[split]) {
+                push(stack, next, buffer.get(node + OFFSET_RIGHT));
+            }
+        }
+        return isAlive(offset);
+    }
+
+    @Override
+    void clear(int[] element) {
+        this.clear(element, 0, root);
+
+        // Rebuild when half of the nodes have been deleted
+        if (deleted > (size >> 1)) {
+            compactify();
+        }
+    }
+
+    @Override
+    void compactify() {
+
+        // Collect
+        int[][] elements = new int[size - deleted][];
+        int index = 0;
+        Iterator<int[]> iterator = this.iterator();
+        int[] element = iterator.next();
+        while (element != null) {
+            elements[index++] = element.clone();
+            element = iterator.next();
+        }
+
+        // Rebuild
+        this.clearAll();
+        this.root = build(elements, 0, elements.length, 0);
+        this.size = elements.length;
+        this.balanced = elements.length;
+    }
+
+    @Override
+    boolean contains(int[] element, int dimension, int offset) {
+
+        // The depth of the tree is not bounded, so we traverse it with an explicit stack of
+        // pairs of dimensions and offsets
+        IntegerStack stack = getStack(2);
+        push(stack, dimension, offset);
+        while (!stack.empty()) {
+            int node = stack.pop();
+            int split = stack.pop();
+
+            // Check
+            if (!(upwards ? mayContainLessOrEqual(element, node) : mayContainGreaterOrEqual(element, node))) {
+                continue;
+            }
+
+            // Node
+            if ((buffer.get(node + OFFSET_FLAGS) & FLAG_DELETED) == 0 &&
+                (upwards ? isLessOrEqual(node, element) : isGreaterOrEqual(node, element))) {
+                return true;
+            }
+
+            // Children
+            int next = split + 1 == dimensions ? 0 : split + 1;
+            int value = buffer.get(node + OFFSET_ELEMENT + split);
+            if (upwards) {
+                if (value <= element[split]) {
+                    push(stack, next, buffer.get(node + OFFSET_RIGHT));
+                }
+                push(stack, next, buffer.get(node + OFFSET_LEFT));
+            } else {
+                if (element[split] < value) {
+                    push(stack, next, buffer.get(node + OFFSET_LEFT));
+                }
+                push(stack, next, buffer.get(node + OFFSET_RIGHT));
+            }
+        }
+        return false;
+    }
+
+    @Override
+    boolean contains(int[] node) {
+        return contains(node, 0, root);
+    }
+
+    @Override
+    Iterator<int[]> iterator() {
+        return iterator(-1);
+    }
+
+    @Override
+    Iterator<int[]> iterator(final int level) {
+
+        // Return
+        return new Iterator<int[]>() {
+
+            /** Current element*/
+            int[] element = new int[dimensions];
+            /** Current offset*/
+            int   offset  = 1;
+
+            @Override public boolean hasNext() { throw new UnsupportedOperationException(); }
+
+            @Override
+            public int[] next() {
+                int end = 1 + size * nodeSize;
+                while (offset < end) {
+                    int current = offset;
+                    offset += nodeSize;
+                    if ((buffer.get(current + OFFSET_FLAGS) & FLAG_DELETED) == 0) {
+                        int sum = 0;
+                        for (int i = 0; i < dimensions; i++) {
+                            element[i] = buffer.get(current + OFFSET_ELEMENT + i);
+                            sum += element[i];
+                        }
+                        if (level == -1 || sum == level) {
+                            return element;
+                        }
+                    }
+                }
+                return null;
+            }
+            @Override public void remove() { throw new UnsupportedOperationException(); }
+        };
+    }
+
+    @Override
+    LongIterator iteratorLong(final long[] multiplier) {
+
+        final Iterator<int[]> iterator = this.iterator();
+
+        // Return
+        return new LongIterator() {
+
+            @Override public boolean hasNext() { throw new UnsupportedOperationException(); }
+
+            @Override
+            public long next() {
+                int[] element = iterator.next();
+                if (element == null) {
+                    return -1;
+                }
+                long result = 0;
+                for (int i = 0; i < dimensions; i++) {
+                    result += (long) element[i] * multiplier[i];
+                }
+                return result;
+            }
+        };
+    }
+
+    @Override
+    JHPLTrie newInstance() {
+        return new JHPLKDTree(this.lattice, this.upwards);
+    }
+
+    @Override
+    void put(int[] element) {
+        put(element, 0, root);
+        size++;
+
+        // Keep the tree balanced
+        if (size > 2 * balanced + dimensions) {
+            compactify();
+        }
+    }
+
+    @Override
+    void put(int[] element, int dimension, int offset) {
+
+        // Create node
+        int node = allocate(element);
+
+        // Empty tree
+        if (offset == JHPLBuffer.FLAG_NOT_AVAILABLE) {
+            root = node;
+            return;
+        }
+
+        // Descend
+        while (true) {
+            if (summaries) {
+                summarize(element, offset);
+            }
+            int pointer = offset + (element[dimension] < buffer.get(offset + OFFSET_ELEMENT + dimension) ? OFFSET_LEFT : OFFSET_RIGHT);
+            if (buffer.get(pointer) == JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                buffer.set(pointer, node);
+                return;
+            }
+            offset = buffer.get(pointer);
+            dimension = dimension + 1 == dimensions ? 0 : dimension + 1;
+        }
+    }
+
+    @Override
+    int size() {
+        return size - deleted;
+    }
+
+    @Override
+    String toString(String prefix1, String prefix2) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(prefix1).append("KD-Tree\n");
+        builder.append(prefix2).append("├── Memory statistics\n");
+        builder.append(prefix2).append("|   ├── Allocated: ").append(buffer.getByteSize()).append(" [bytes]\n");
+        builder.append(prefix2).append("|   └── Used: ").append(used * 4).append(" [bytes]\n");
+        builder.append(prefix2).append("└── Elements\n");
+        builder.append(prefix2).append("    ├── Stored: ").append(size - deleted).append("\n");
+        builder.append(prefix2).append("    └── Deleted: ").append(deleted).append("\n");
+        return builder.toString();
+    }
+
+    /**
+     * Allocates a new node for the given element
+     * @param element
+     * @return
+     */
+    private int allocate(int[] element) {
+        int node = buffer.allocate(nodeSize);
+        used += nodeSize;
+        for (int i = 0; i < dimensions; i++) {
+            buffer.set(node + OFFSET_ELEMENT + i, element[i]);
+        }
+        if (summaries) {
+            summarize(element, node);
+        }
+        return node;
+    }
+
+    /**
+     * Builds a balanced tree from the given range of elements
+     * @param elements
+     * @param from
+     * @param to
+     * @param dimension
+     * @return
+     */
+    private int build(int[][] elements, int from, int to, final int dimension) {
+
+        // Empty
+        if (from >= to) {
+            return JHPLBuffer.FLAG_NOT_AVAILABLE;
+        }
+
+        // Sort and select median. All elements in the left subtree must be smaller.
+        Arrays.sort(elements, from, to, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] o1, int[] o2) {
+                return o1[dimension] - o2[dimension];
+            }
+        });
+        int median = (from + to) >>> 1;
+        while (median > from && elements[median - 1][dimension] == elements[median][dimension]) {
+            median--;
+        }
+
+        // Build
+        int next = dimension + 1 == dimensions ? 0 : dimension + 1;
+        int node = allocate(elements[median]);
+        int left = build(elements, from, median, next);
+        int right = build(elements, median + 1, to, next);
+        buffer.set(node + OFFSET_LEFT, left);
+        buffer.set(node + OFFSET_RIGHT, right);
+        if (summaries) {
+            resummarize(node);
+        }
+        return node;
+    }
+
+    /**
+     * Resets this tree
+     */
+    private void clearAll() {
+
+        // Offset 0 is reserved for marking missing children
+        this.buffer.replace(this.buffer.newInstance());
+        this.buffer.allocate(1);
+        this.used = 1;
+        this.root = JHPLBuffer.FLAG_NOT_AVAILABLE;
+        this.size = 0;
+        this.deleted = 0;
+        this.balanced = 0;
+    }
+
+    /**
+     * Returns an empty stack, which can hold the given number of values per node of this tree
+     * @param values
+     * @return
+     */
+    private IntegerStack getStack(int values) {
+        int capacity = values * (size + 1);
+        if (stack == null || stack.capacity() < capacity) {
+            stack = new IntegerStack(capacity + (capacity >> 1));
+        }
+        stack.clear();
+        return stack;
+    }
+
+    /**
+     * Returns whether the subtree of the given node contains elements that have not been deleted
+     * @param offset
+     * @return
+     */
+    private boolean isAlive(int offset) {
+        if (summaries) {
+            return buffer.get(offset + offsetBox) != JHPLBuffer.FLAG_NOT_AVAILABLE;
+        } else {
+            return true;
+        }
+    }
+
+    /**
+     * Returns whether the element in the given node is greater than or equal to the given element
+     * @param offset
+     * @param element
+     * @return
+     */
+    private boolean isGreaterOrEqual(int offset, int[] element) {
+        offset += OFFSET_ELEMENT;
+        for (int i = 0; i < dimensions; i++) {
+            if (buffer.get(offset + i) < element[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the element in the given node is less than or equal to the given element
+     * @param offset
+     * @param element
+     * @return
+     */
+    private boolean isLessOrEqual(int offset, int[] element) {
+        offset += OFFSET_ELEMENT;
+        for (int i = 0; i < dimensions; i++) {
+            if (buffer.get(offset + i) > element[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the subtree of the given node may contain an element that is greater than or equal to the given element
+     * @param element
+     * @param offset
+     * @return
+     */
+    private boolean mayContainGreaterOrEqual(int[] element, int offset) {
+        if (summaries) {
+            offset += offsetBox;
+            for (int i = 0; i < dimensions; i++) {
+                int summary = buffer.get(offset + i);
+                if (summary == JHPLBuffer.FLAG_NOT_AVAILABLE || getMax(summary) < element[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the subtree of the given node may contain an element that is less than or equal to the given element
+     * @param element
+     * @param offset
+     * @return
+     */
+    private boolean mayContainLessOrEqual(int[] element, int offset) {
+        if (summaries) {
+            offset += offsetBox;
+            for (int i = 0; i < dimensions; i++) {
+                int summary = buffer.get(offset + i);
+                if (summary == JHPLBuffer.FLAG_NOT_AVAILABLE || getMin(summary) > element[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Pushes the given node onto the given stack, if it exists
+     * @param stack
+     * @param dimension
+     * @param offset
+     */
+    private void push(IntegerStack stack, int dimension, int offset) {
+        if (offset != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+            stack.push(dimension);
+            stack.push(offset);
+        }
+    }
+
+    /**
+     * Recomputes the bounding box of the given node
+     * @param offset
+     */
+    private void resummarize(int offset) {
+        int box = offset + offsetBox;
+        int left = buffer.get(offset + OFFSET_LEFT);
+        int right = buffer.get(offset + OFFSET_RIGHT);
+        boolean alive = (buffer.get(offset + OFFSET_FLAGS) & FLAG_DELETED) == 0;
+        for (int i = 0; i < dimensions; i++) {
+            int summary = JHPLBuffer.FLAG_NOT_AVAILABLE;
+            if (alive) {
+                int value = buffer.get(offset + OFFSET_ELEMENT + i);
+                summary = merge(summary, value, value);
+            }
+            int child = left == JHPLBuffer.FLAG_NOT_AVAILABLE ? JHPLBuffer.FLAG_NOT_AVAILABLE : buffer.get(left + offsetBox + i);
+            if (child != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                summary = merge(summary, getMin(child), getMax(child));
+            }
+            child = right == JHPLBuffer.FLAG_NOT_AVAILABLE ? JHPLBuffer.FLAG_NOT_AVAILABLE : buffer.get(right + offsetBox + i);
+            if (child != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                summary = merge(summary, getMin(child), getMax(child));
+            }
+            buffer.set(box + i, summary);
+        }
+    }
+
+    /**
+     * Adds the given element to the bounding box of the given node
+     * @param element
+     * @param offset
+     */
+    private void summarize(int[] element, int offset) {
+        int box = offset + offsetBox;
+        for (int i = 0; i < dimensions; i++) {
+            buffer.set(box + i, merge(buffer.get(box + i), element[i], element[i]));
+        }
+    }
+}
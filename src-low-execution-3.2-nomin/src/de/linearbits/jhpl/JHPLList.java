@@ -0,0 +1,89 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class stores an antichain as a list of arrays
+ *
+ * @author Fabian Prasser
+ */
+class JHPLList extends JHPLAntichain {
+
+    /** Elements */
+    private final List<int[]> list = new ArrayList<int[]>();
+
+    /**
+     * Constructs a new instance
+     * @param lattice
+     * @param upwards
+     */
+    JHPLList(Lattice<?, ?> lattice, boolean upwards) {
+        super(lattice, upwards);
+    }
+
+    @Override
+    boolean clear(int[] element, int dimension, int offset) {
+        boolean deleted = false;
+        for (int index = 0; index < list.size(); ) {
+            int[] array = list.get(index);
+            if (upwards ? isGreaterOrEqual(array, 0, element) : isLessOrEqual(array, 0, element)) {
+                int last = list.size() - 1;
+                list.set(index, list.get(last));
+                list.remove(last);
+                deleted = true;
+            } else {
+                index++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    boolean contains(int[] element, int dimension, int offset) {
+        for (int index = 0; index < list.size(); index++) {
+            int[] array = list.get(index);
+            if (upwards ? isLessOrEqual(array, 0, element) : isGreaterOrEqual(array, 0, element)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    void get(int index, int[] element) {
+        System.arraycopy(list.get(index), 0, element, 0, dimensions);
+    }
+
+    @Override
+    long getByteSize() {
+        // Array header and elements plus one reference per list entry
+        return (long) list.size() * (16 + 4 * dimensions + 8);
+    }
+
+    @Override
+    JHPLTrie newInstance() {
+        return new JHPLList(this.lattice, this.upwards);
+    }
+
+    @Override
+    void put(int[] element, int dimension, int offset) {
+        list.add(element.clone());
+    }
+
+    @Override
+    int size() {
+        return list.size();
+    }
+}
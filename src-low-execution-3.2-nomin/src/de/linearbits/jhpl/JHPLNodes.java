@@ -18,6 +18,7 @@ import java.util.Iterator;
 import de.linearbits.jhpl.JHPLIterator.ConditionalIntArrayIterator;
 import de.linearbits.jhpl.JHPLIterator.IntArrayCondition;
 import de.linearbits.jhpl.JHPLIterator.LongIterator;
+import de.linearbits.jhpl.Lattice.Encoding;
 
 /**
  * This class implements methods for working with nodes.
@@ -28,27 +29,168 @@ import de.linearbits.jhpl.JHPLIterator.LongIterator;
  */
 public class JHPLNodes<T> {
 
+    /**
+     * A reusable iterator over the identifiers of all direct successors or predecessors of a node.
+     * It can be reset to other nodes, which means that enumerating neighbours does not allocate any memory.
+     * The digits of the identifier are extracted incrementally, and no intermediate array is created.
+     * 
+     * @author Fabian Prasser
+     */
+    public static class NeighbourIterator implements LongIterator {
+
+        /** Heights */
+        private final int[]          heights;
+        /** Multiplier */
+        private final long[]         multiplier;
+        /** Shifts, if identifiers are bit-packed */
+        private final int[]          shifts;
+        /** Masks, if identifiers are bit-packed */
+        private final int[]          masks;
+        /** Dictionary, if identifiers are assigned on demand */
+        private final JHPLDictionary dictionary;
+        /** State */
+        private int                  dimension;
+        /** State */
+        private long                 id;
+        /** State */
+        private long                 next;
+        /** State */
+        private long                 remainder;
+        /** State */
+        private boolean              successors;
+
+        /**
+         * Creates a new instance
+         * @param multiplier
+         * @param heights
+         * @param shifts
+         * @param masks
+         * @param dictionary
+         */
+        private NeighbourIterator(long[] multiplier, int[] heights, int[] shifts, int[] masks, JHPLDictionary dictionary) {
+            this.multiplier = multiplier;
+            this.heights = heights;
+            this.shifts = shifts;
+            this.masks = masks;
+            this.dictionary = dictionary;
+            this.next = -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public long next() {
+            long result = next;
+            next = pull();
+            return result;
+        }
+
+        /**
+         * Resets this iterator to the predecessors of the given node
+         * @param id
+         * @return
+         */
+        public NeighbourIterator predecessors(long id) {
+            return reset(id, false);
+        }
+
+        /**
+         * Resets this iterator to the successors of the given node
+         * @param id
+         * @return
+         */
+        public NeighbourIterator successors(long id) {
+            return reset(id, true);
+        }
+
+        /**
+         * Returns the id of the next element, returns a negative value if there is no such element
+         * @return
+         */
+        private long pull() {
+            if (dictionary != null) {
+                while (dimension < heights.length) {
+                    int digit = dictionary.get(id, dimension);
+                    if (successors ? digit + 1 < heights[dimension] : digit > 0) {
+                        return dictionary.getNeighbour(id, dimension++, successors ? 1 : -1);
+                    }
+                    dimension++;
+                }
+                return -1;
+            }
+            while (dimension < multiplier.length) {
+                long mult = multiplier[dimension];
+                int digit;
+                if (shifts != null) {
+                    digit = (int) (id >>> shifts[dimension]) & masks[dimension];
+                } else {
+                    digit = (int) (remainder / mult);
+                    remainder -= digit * mult;
+                }
+                if (successors) {
+                    if (digit + 1 < heights[dimension++]) {
+                        return id + mult;
+                    }
+                } else {
+                    dimension++;
+                    if (digit > 0) {
+                        return id - mult;
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Resets the iterator
+         * @param id
+         * @param successors
+         * @return
+         */
+        private NeighbourIterator reset(long id, boolean successors) {
+            this.id = id;
+            this.remainder = id;
+            this.dimension = 0;
+            this.successors = successors;
+            this.next = pull();
+            return this;
+        }
+    }
+
     /** Bottom node */
-    private final int[]         bottom;
+    private final int[]          bottom;
     /** The number of dimensions */
-    private final int           dimensions;
+    private final int            dimensions;
     /** Elements */
-    private final T[][]         elements;
+    private final T[][]          elements;
     /** The height of each dimension */
-    private final int[]         heights;
+    private final int[]          heights;
     /** Top node */
-    private final int[]         top;
+    private final int[]          top;
     /** Lattice */
-    private final Lattice<T, ?> lattice;
+    private final Lattice<T, ?>  lattice;
     /** Multiplier */
-    private final long[]        multiplier;
+    private final long[]         multiplier;
+    /** Shift of each dimension, if identifiers are bit-packed */
+    private final int[]          shifts;
+    /** Mask of each dimension, if identifiers are bit-packed */
+    private final int[]          masks;
+    /** Dictionary, if identifiers are assigned on demand */
+    private final JHPLDictionary dictionary;
+    /** The encoding */
+    private final Encoding       encoding;
 
     /**
      * Creates a new instance
+     * @param lattice
+     * @param encoding
      * @param elements
      */
     @SafeVarargs
-    JHPLNodes(Lattice<T, ?> lattice, T[]... elements) {
+    JHPLNodes(Lattice<T, ?> lattice, Encoding encoding, T[]... elements) {
         this.dimensions = elements.length;
         this.heights = new int[this.dimensions];
         for (int j = 0; j < elements.length; j++) {
@@ -61,11 +203,73 @@ public class JHPLNodes<T> {
         }
         this.elements = elements;
         this.lattice = lattice;
-        this.multiplier = new long[this.dimensions];
-        this.multiplier[elements.length - 1] = 1;
-        for (int i = elements.length - 2; i >= 0; i--) {
-            this.multiplier[i] = this.elements[i + 1].length * this.multiplier[i + 1];
+        
+        // Identifiers assigned on demand
+        if (encoding == Encoding.SPARSE || !isComputable(heights)) {
+            this.encoding = Encoding.SPARSE;
+            this.dictionary = new JHPLDictionary(this.dimensions);
+            this.multiplier = null;
+            this.shifts = null;
+            this.masks = null;
+            
+        // Bit-packed identifiers
+        } else if (encoding == Encoding.PACKED && isPackable(heights)) {
+            this.encoding = Encoding.PACKED;
+            this.dictionary = null;
+            this.multiplier = new long[this.dimensions];
+            this.shifts = new int[this.dimensions];
+            this.masks = new int[this.dimensions];
+            int shift = 0;
+            for (int i = elements.length - 1; i >= 0; i--) {
+                int bits = 32 - Integer.numberOfLeadingZeros(heights[i] - 1);
+                this.shifts[i] = shift;
+                this.masks[i] = (1 << bits) - 1;
+                this.multiplier[i] = 1L << shift;
+                shift += bits;
+            }
+            
+        // Mixed-radix identifiers
+        } else {
+            this.encoding = Encoding.DENSE;
+            this.dictionary = null;
+            this.multiplier = new long[this.dimensions];
+            this.shifts = null;
+            this.masks = null;
+            this.multiplier[elements.length - 1] = 1;
+            for (int i = elements.length - 2; i >= 0; i--) {
+                this.multiplier[i] = this.elements[i + 1].length * this.multiplier[i + 1];
+            }
+        }
+    }
+
+    /**
+     * Returns whether identifiers can be computed for the given heights, i.e. whether the number
+     * of nodes does not exceed <code>Long.MAX_VALUE</code>
+     * @param heights
+     * @return
+     */
+    private static boolean isComputable(int[] heights) {
+        double size = 1d;
+        for (int height : heights) {
+            size *= height;
+        }
+        return size <= Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns whether bit-packed identifiers can be used for the given heights, i.e. whether they 
+     * require at most 62 bits, and at most 31 bits if dense identifiers require at most 31 bits
+     * @param heights
+     * @return
+     */
+    private static boolean isPackable(int[] heights) {
+        int bits = 0;
+        double size = 1d;
+        for (int height : heights) {
+            bits += 32 - Integer.numberOfLeadingZeros(height - 1);
+            size *= height;
         }
+        return bits <= 62 && (bits <= 31 || size > Integer.MAX_VALUE);
     }
 
     /**
@@ -113,7 +317,16 @@ public class JHPLNodes<T> {
      * @return
      */
     public int getLevel(long id) {
+        if (dictionary != null) {
+            return dictionary.getLevel(id);
+        }
         int level = 0;
+        if (shifts != null) {
+            for (int i = 0; i < dimensions; i++) {
+                level += (int) (id >>> shifts[i]) & masks[i];
+            }
+            return level;
+        }
         for (int i = 0; i < dimensions; i++) {
             long mult = multiplier[i];
             level += (int)(id / mult);
@@ -123,7 +336,7 @@ public class JHPLNodes<T> {
     }
 
     /**
-     * Multiplier
+     * Multiplier, null if identifiers are assigned on demand
      * @return
      */
     public long[] getMultiplier() {
@@ -190,6 +403,119 @@ public class JHPLNodes<T> {
         return Arrays.equals(node1, node2);
     }
 
+    /**
+     * Returns a new iterator over neighbours, which can be reused for enumerating the successors
+     * or predecessors of arbitrary nodes without allocating memory
+     * @return
+     */
+    public NeighbourIterator newNeighbourIterator() {
+        return new NeighbourIterator(multiplier, heights, shifts, masks, dictionary);
+    }
+
+    /**
+     * Writes the identifiers of all direct predecessors of the given node into the given array,
+     * in ascending order of dimensions. This method does not allocate memory.
+     * @param node
+     * @param id The identifier of the node
+     * @param result An array with at least one slot per dimension
+     * @return The number of predecessors
+     */
+    public int predecessors(int[] node, long id, long[] result) {
+        int count = 0;
+        for (int i = 0; i < dimensions; i++) {
+            if (node[i] > 0) {
+                result[count++] = dictionary != null ? dictionary.getNeighbour(id, i, -1) : id - multiplier[i];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the identifiers of all direct predecessors of the node with the given identifier into 
+     * the given array, in ascending order of dimensions. This method does not allocate memory.
+     * @param id
+     * @param result An array with at least one slot per dimension
+     * @return The number of predecessors
+     */
+    public int predecessors(long id, long[] result) {
+        int count = 0;
+        if (dictionary != null) {
+            for (int i = 0; i < dimensions; i++) {
+                if (dictionary.get(id, i) > 0) {
+                    result[count++] = dictionary.getNeighbour(id, i, -1);
+                }
+            }
+            return count;
+        }
+        long remainder = id;
+        for (int i = 0; i < dimensions; i++) {
+            long mult = multiplier[i];
+            int digit;
+            if (shifts != null) {
+                digit = (int) (id >>> shifts[i]) & masks[i];
+            } else {
+                digit = (int) (remainder / mult);
+                remainder -= digit * mult;
+            }
+            if (digit > 0) {
+                result[count++] = id - mult;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the identifiers of all direct successors of the given node into the given array,
+     * in ascending order of dimensions. This method does not allocate memory.
+     * @param node
+     * @param id The identifier of the node
+     * @param result An array with at least one slot per dimension
+     * @return The number of successors
+     */
+    public int successors(int[] node, long id, long[] result) {
+        int count = 0;
+        for (int i = 0; i < dimensions; i++) {
+            if (node[i] + 1 < heights[i]) {
+                result[count++] = dictionary != null ? dictionary.getNeighbour(id, i, 1) : id + multiplier[i];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Writes the identifiers of all direct successors of the node with the given identifier into 
+     * the given array, in ascending order of dimensions. This method does not allocate memory.
+     * @param id
+     * @param result An array with at least one slot per dimension
+     * @return The number of successors
+     */
+    public int successors(long id, long[] result) {
+        int count = 0;
+        if (dictionary != null) {
+            for (int i = 0; i < dimensions; i++) {
+                if (dictionary.get(id, i) + 1 < heights[i]) {
+                    result[count++] = dictionary.getNeighbour(id, i, 1);
+                }
+            }
+            return count;
+        }
+        long remainder = id;
+        for (int i = 0; i < dimensions; i++) {
+            long mult = multiplier[i];
+            int digit;
+            if (shifts != null) {
+                digit = (int) (id >>> shifts[i]) & masks[i];
+            } else {
+                digit = (int) (remainder / mult);
+                remainder -= digit * mult;
+            }
+            if (digit + 1 < heights[i]) {
+                result[count++] = id + mult;
+            }
+        }
+        return count;
+    }
+
     /**
      * Returns an iterator over all predecessors. Note: the iterator will always return the same array.
      * @param node
@@ -206,6 +532,10 @@ public class JHPLNodes<T> {
      */
     public LongIterator listPredecessors(final long _id) {
 
+        if (dictionary != null) {
+            return newNeighbourIterator().predecessors(_id);
+        }
+
         return new LongIterator() {
             
             // State
@@ -261,6 +591,10 @@ public class JHPLNodes<T> {
      */
     public LongIterator listPredecessorsAsIdentifiers(final int[] node, final long identifier) {
 
+        if (dictionary != null) {
+            return newNeighbourIterator().predecessors(identifier);
+        }
+
         return new LongIterator() {
             
             // State
@@ -415,6 +749,10 @@ public class JHPLNodes<T> {
      * @return
      */
     public LongIterator listSuccessors(final long _id) {
+
+        if (dictionary != null) {
+            return newNeighbourIterator().successors(_id);
+        }
         
         return new LongIterator() {
             
@@ -472,6 +810,10 @@ public class JHPLNodes<T> {
     public LongIterator listSuccessorsAsIdentifiers(final int[] node, 
                                                     final long identifier) {
 
+        if (dictionary != null) {
+            return newNeighbourIterator().successors(identifier);
+        }
+
         return new LongIterator() {
             
             // State
@@ -805,6 +1147,29 @@ public class JHPLNodes<T> {
         }
     }
     
+    /**
+     * Checks the given identifier for boundary conditions
+     * @param id
+     */
+    void checkNode(long id) {
+        if (dictionary != null) {
+            if (!dictionary.contains(id)) {
+                throw new IllegalArgumentException("Identifier out of bounds");
+            }
+            return;
+        }
+        if (id < 0 || id >= multiplier[0] * heights[0]) {
+            throw new IllegalArgumentException("Identifier out of bounds");
+        }
+        if (shifts != null) {
+            for (int i = 0; i < dimensions; i++) {
+                if (((int) (id >>> shifts[i]) & masks[i]) >= heights[i]) {
+                    throw new IllegalArgumentException("Identifier out of bounds");
+                }
+            }
+        }
+    }
+
     /**
      * Checks the given array for boundary conditions
      * @param array
@@ -827,6 +1192,22 @@ public class JHPLNodes<T> {
         return this.dimensions;
     }
 
+    /**
+     * Dictionary, null if identifiers are computed
+     * @return
+     */
+    JHPLDictionary getDictionary() {
+        return this.dictionary;
+    }
+
+    /**
+     * Encoding
+     * @return
+     */
+    Encoding getEncoding() {
+        return this.encoding;
+    }
+
     /**
      * Heights
      * @return
@@ -834,4 +1215,28 @@ public class JHPLNodes<T> {
     int[] getHeights() {
         return this.heights;
     }
+
+    /**
+     * Masks, null if identifiers are not bit-packed
+     * @return
+     */
+    int[] getMasks() {
+        return this.masks;
+    }
+
+    /**
+     * Shifts, null if identifiers are not bit-packed
+     * @return
+     */
+    int[] getShifts() {
+        return this.shifts;
+    }
+
+    /**
+     * Returns whether identifiers are bit-packed
+     * @return
+     */
+    boolean isPacked() {
+        return this.shifts != null;
+    }
 }
@@ -142,10 +142,19 @@ public class JHPLSpace<T> {
     /** The offsets for each dimension */
     private final long[]            multiplier;
 
+    /** The shift of each dimension, if identifiers are bit-packed */
+    private final int[]             shifts;
+
+    /** The mask of each dimension, if identifiers are bit-packed */
+    private final int[]             masks;
+
+    /** The dictionary, if identifiers are assigned on demand */
+    private final JHPLDictionary    dictionary;
+
     /** The nodes */
     private final JHPLNodes<T>      nodes;
 
-    /** The number of nodes */
+    /** The number of nodes, at most Long.MAX_VALUE */
     private final long              numNodes;
 
     /**
@@ -159,11 +168,10 @@ public class JHPLSpace<T> {
         this.nodes = nodes;
         this.elements = elements;
         this.dimensions = elements.length;
-        this.multiplier = new long[this.dimensions];
-        this.multiplier[elements.length - 1] = 1;
-        for (int i = elements.length - 2; i >= 0; i--) {
-            this.multiplier[i] = this.elements[i + 1].length * this.multiplier[i + 1];
-        }
+        this.multiplier = nodes.getMultiplier();
+        this.shifts = nodes.getShifts();
+        this.masks = nodes.getMasks();
+        this.dictionary = nodes.getDictionary();
         this.indices = new HashMap[elements.length];
         long nnodes = 1;
         double ndouble = 1d;
@@ -176,10 +184,10 @@ public class JHPLSpace<T> {
                 this.indices[j].put(dimension[i], i);
             }
         }
-        if (ndouble > Long.MAX_VALUE) {
+        if (ndouble > Long.MAX_VALUE && dictionary == null) {
             throw new IllegalArgumentException("A JHPL Lattice must not have more than 2^63-1 nodes");
         }
-        this.numNodes = nnodes;
+        this.numNodes = ndouble > Long.MAX_VALUE ? Long.MAX_VALUE : nnodes;
     }
 
     /**
@@ -243,6 +251,10 @@ public class JHPLSpace<T> {
      * @return
      */
     public long toId(int[] node) {
+        if (dictionary != null) {
+            nodes.checkNode(node);
+            return dictionary.toId(node);
+        }
         long id = 0;
         for (int i = 0; i < dimensions; i++) {
             id += (long) node[i] * multiplier[i];
@@ -250,12 +262,52 @@ public class JHPLSpace<T> {
         return id;
     }
 
+    /**
+     * Returns the long representing the given node in the id space, or -1 if the node has not been
+     * assigned an identifier yet. In contrast to {@link #toId(int[])}, no identifier is assigned to 
+     * the node, which is only done on demand for sparse encodings.
+     * @param node
+     * @return
+     */
+    long findId(int[] node) {
+        if (dictionary != null) {
+            nodes.checkNode(node);
+            return dictionary.find(node);
+        }
+        return toId(node);
+    }
+
+    /**
+     * Constructs a long representing the given node in the id space. The node is represented by indices
+     * which are shifted by the given offsets, i.e. <code>node[i] - offset[i]</code> is the index in dimension i.
+     * @param node
+     * @param offset
+     * @return
+     */
+    public long toId(int[] node, int[] offset) {
+        if (dictionary != null) {
+            int[] index = new int[dimensions];
+            for (int i = 0; i < dimensions; i++) {
+                index[i] = node[i] - offset[i];
+            }
+            return toId(index);
+        }
+        long id = 0;
+        for (int i = 0; i < dimensions; i++) {
+            id += (long) (node[i] - offset[i]) * multiplier[i];
+        }
+        return id;
+    }
+
     /**
      * Constructs a long representing the given node in the id space
      * @param node
      * @return
      */
     public long toId(T[] node) {
+        if (dictionary != null) {
+            return toId(toIndex(node));
+        }
         long id = 0;
         for (int i = 0; i < dimensions; i++) {
             id += (long) indices[i].get(node[i]) * multiplier[i];
@@ -274,6 +326,15 @@ public class JHPLSpace<T> {
     public int[] toIndex(int[] result, long id) {
         checkId(id);
         nodes.checkArray(result);
+        if (dictionary != null) {
+            return dictionary.decode(id, result);
+        }
+        if (shifts != null) {
+            for (int i = 0; i < dimensions; i++) {
+                result[i] = (int) (id >>> shifts[i]) & masks[i];
+            }
+            return result;
+        }
         for (int i = 0; i < dimensions; i++) {
             result[i] = (int)(id / multiplier[i]);
             id %= multiplier[i];
@@ -281,6 +342,38 @@ public class JHPLSpace<T> {
         return result;
     }
 
+    /**
+     * Constructs an array representing the given node in the index space, shifted by the given offsets, 
+     * i.e. <code>result[i] - offset[i]</code> is the index in dimension i. Reuses the given array.
+     * @param result
+     * @param id
+     * @param offset
+     * @return
+     */
+    public int[] toIndex(int[] result, long id, int[] offset) {
+        checkId(id);
+        nodes.checkArray(result);
+        if (dictionary != null) {
+            for (int i = 0; i < dimensions; i++) {
+                result[i] = dictionary.get(id, i) + offset[i];
+            }
+            return result;
+        }
+        if (shifts != null) {
+            for (int i = 0; i < dimensions; i++) {
+                result[i] = ((int) (id >>> shifts[i]) & masks[i]) + offset[i];
+            }
+            return result;
+        }
+        for (int i = 0; i < dimensions; i++) {
+            long mult = multiplier[i];
+            int index = (int)(id / mult);
+            result[i] = index + offset[i];
+            id -= index * mult;
+        }
+        return result;
+    }
+
     /**
      * Constructs an array representing the given node in the index space. Reuses the given array.
      * @param result
@@ -303,6 +396,15 @@ public class JHPLSpace<T> {
      */
     public int[] toIndex(long id) {
         int[] result = new int[dimensions];
+        if (dictionary != null) {
+            return dictionary.decode(id, result);
+        }
+        if (shifts != null) {
+            for (int i = 0; i < dimensions; i++) {
+                result[i] = (int) (id >>> shifts[i]) & masks[i];
+            }
+            return result;
+        }
         for (int i = 0; i < dimensions; i++) {
             long mult = multiplier[i];
             result[i] = (int)(id / mult);
@@ -369,6 +471,12 @@ public class JHPLSpace<T> {
     public T[] toSource(T[] result, long id) {
         checkId(id);
         nodes.checkArray(result);
+        if (dictionary != null) {
+            for (int i = 0; i < dimensions; i++) {
+                result[i] = this.elements[i][dictionary.get(id, i)];
+            }
+            return result;
+        }
         for (int i = 0; i < dimensions; i++) {
             int idx = (int)(id / multiplier[i]);
             if (idx < 0 || idx >= this.elements[i].length) {
@@ -387,8 +495,10 @@ public class JHPLSpace<T> {
     private void checkId(long id) {
         if (id < 0) {
             throw new IllegalArgumentException("Invalid id: must not be negative");
-        } else if (id >= numNodes) { 
+        } else if (shifts == null && dictionary == null && id >= numNodes) { 
             throw new IllegalArgumentException("Invalid id: must not be larger than " + (numNodes - 1)); 
+        } else if (shifts != null || dictionary != null) {
+            nodes.checkNode(id);
         }
     }
 }
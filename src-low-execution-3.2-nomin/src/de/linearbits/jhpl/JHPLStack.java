@@ -47,6 +47,21 @@ class JHPLStack {
             return size == 0;
         }
 
+        /**
+         * Returns the capacity
+         * @return
+         */
+        int capacity() {
+            return buffer.length;
+        }
+
+        /**
+         * Removes all elements
+         */
+        void clear() {
+            size = 0;
+        }
+
         /**
          * Increment
          * @return
@@ -28,20 +28,44 @@ import de.linearbits.jhpl.JHPLStack.LongStack;
 abstract class JHPLTrie {
 
     /** Constant*/
-    protected static final double COMPACTION_THRESHOLD = 0.2d;
+    protected static final double  COMPACTION_THRESHOLD = 0.2d;
+    /** Constant*/
+    protected static final int     SUMMARY_LIMIT        = 0xFFFF;
+    /** Constant: result of a descent in which an element covering the added element was found */
+    protected static final int     ADD_COVERED          = 0;
+    /** Constant: result of a descent after which the node is empty */
+    protected static final int     ADD_EMPTY            = 1;
+    /** Constant: result of a descent after which the node is not empty */
+    protected static final int     ADD_NOT_EMPTY        = 2;
 
     /** The buffer */
-    protected final JHPLBuffer    buffer;
+    protected final JHPLBuffer     buffer;
     /** The number of dimensions */
-    protected final int           dimensions;
+    protected final int            dimensions;
     /** The height of each dimension */
-    protected final int[]         heights;
+    protected final int[]          heights;
     /** The Lattice */
-    protected final Lattice<?, ?> lattice;
+    protected final Lattice<?, ?>  lattice;
     /** The number of levels */
-    protected final int           levels;
+    protected final int            levels;
+    /** The multiplier of each dimension, for decoding identifiers */
+    protected final long[]         multiplier;
+    /** The shift of each dimension, if identifiers are bit-packed */
+    protected final int[]          shifts;
+    /** The mask of each dimension, if identifiers are bit-packed */
+    protected final int[]          masks;
+    /** The dictionary, if identifiers are assigned on demand */
+    protected final JHPLDictionary dictionary;
+    /** Buffer for decoding identifiers */
+    private final int[]            decoded;
+    /** Buffer for decoding batches of identifiers */
+    private int[][]                decodedBatch = new int[0][];
+    /** Buffer for the queries that are active on each level of a batch traversal */
+    private int[][]                activeBatch  = new int[0][];
     /** The number of used memory units */
-    protected int                 used;
+    protected int                  used;
+    /** Whether each node stores a summary of the elements beneath it */
+    protected final boolean        summaries;
 
     /**
      * Constructs a new trie
@@ -49,13 +73,64 @@ abstract class JHPLTrie {
      * @param withLevel
      */
     JHPLTrie(Lattice<?, ?> lattice, boolean withLevel) {
+        this(lattice, withLevel, false);
+    }
+    
+    /**
+     * Constructs a new instance without allocating a root node. Used by structures that
+     * manage the layout of the backing buffer themselves. Summaries will be enabled, if supported.
+     * @param lattice
+     */
+    JHPLTrie(Lattice<?, ?> lattice) {
+        this.dimensions = lattice.nodes().getDimensions();
+        this.heights = lattice.nodes().getHeights();
+        this.multiplier = lattice.nodes().getMultiplier();
+        this.shifts = lattice.nodes().getShifts();
+        this.masks = lattice.nodes().getMasks();
+        this.dictionary = lattice.nodes().getDictionary();
+        this.decoded = new int[this.dimensions];
+        boolean summarizable = true;
+        for (int i = 0; i < this.heights.length; i++) {
+            summarizable &= this.heights[i] < SUMMARY_LIMIT;
+        }
+        this.summaries = summarizable;
+        this.buffer = JHPLBuffer.create(lattice.getMemory());
+        this.used = 0;
+        this.lattice = lattice;
+        int sum = 0;
+        for (int i = 0; i < this.heights.length; i++) {
+            sum += this.heights[i] - 1;
+        }
+        this.levels = sum + 1;
+    }
+
+    /**
+     * Constructs a new trie. If requested, each node will be followed by one summary per remaining dimension,
+     * which stores the minimal and maximal index of all elements beneath the node in this dimension.
+     * Summaries are only supported if all dimensions have less than 2^16-1 elements.
+     * 
+     * @param lattice
+     * @param withLevel
+     * @param withSummaries
+     */
+    JHPLTrie(Lattice<?, ?> lattice, boolean withLevel, boolean withSummaries) {
         
         // Initialize. Root node will be at offset 0
         this.dimensions = lattice.nodes().getDimensions();
         this.heights = lattice.nodes().getHeights();
-        this.buffer = new JHPLBuffer();
-        this.buffer.allocate(heights[0] + (withLevel ? 1 : 0));
-        this.used = heights[0] + (withLevel ? 1 : 0);
+        this.multiplier = lattice.nodes().getMultiplier();
+        this.shifts = lattice.nodes().getShifts();
+        this.masks = lattice.nodes().getMasks();
+        this.dictionary = lattice.nodes().getDictionary();
+        this.decoded = new int[this.dimensions];
+        boolean summarizable = true;
+        for (int i = 0; i < this.heights.length; i++) {
+            summarizable &= this.heights[i] < SUMMARY_LIMIT;
+        }
+        this.summaries = withSummaries && summarizable;
+        this.buffer = JHPLBuffer.create(lattice.getMemory());
+        this.buffer.allocate(getNodeSize(0) + (withLevel ? 1 : 0));
+        this.used = getNodeSize(0) + (withLevel ? 1 : 0);
         this.lattice = lattice;
         int sum = 0;
         for (int i = 0; i < this.heights.length; i++) {
@@ -80,6 +155,17 @@ abstract class JHPLTrie {
             element = iterator.next();
         }
         this.buffer.replace(other.buffer);
+        this.used = other.used;
+    }
+
+    /**
+     * Compacts this trie, if the utilization of its buffer is low
+     */
+    void compactifyIfRequired() {
+        double utilization = (double)used / (double)buffer.capacity();
+        if (utilization < COMPACTION_THRESHOLD) {
+            compactify();
+        }
     }
 
     /**
@@ -111,7 +197,7 @@ abstract class JHPLTrie {
         StringBuilder builder = new StringBuilder();
         List<Integer> children = new ArrayList<Integer>();
         for (int i = offset; i<offset + heights[dimension]; i++) {
-            if (buffer.memory[i] != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+            if (buffer.get(i) != JHPLBuffer.FLAG_NOT_AVAILABLE) {
                 children.add(i);
             }
         }
@@ -119,31 +205,150 @@ abstract class JHPLTrie {
             int i = children.get(j);
             builder.append(prefix).append(isTail ? "└── " : "├── ").append("[").append(i - offset).append("]\n");
             if (dimension != dimensions - 1) {
-                builder.append(toString(prefix + (isTail ? "    " : "│   "), false, buffer.memory[i], dimension + 1));
+                builder.append(toString(prefix + (isTail ? "    " : "│   "), false, buffer.get(i), dimension + 1));
             }
         }
         if (children.size() > 0) {
             int i = children.get(children.size() - 1);
             builder.append(prefix).append(isTail ? "└── " : "├── ").append("[").append(i - offset).append("]\n");
             if (dimension != dimensions - 1) {
-                builder.append(toString(prefix + (isTail ? "    " : "│   "), true, buffer.memory[i], dimension + 1));
+                builder.append(toString(prefix + (isTail ? "    " : "│   "), true, buffer.get(i), dimension + 1));
             }
         }
         return builder;
     }
 
+    /**
+     * Helper for answering a batch of queries
+     * @param elements
+     * @param count
+     * @param dimension
+     * @param offset
+     * @param lessOrEqual
+     * @param result
+     */
+    private void containsBatch(int[][] elements, int count, int dimension, int offset, boolean lessOrEqual, boolean[] result) {
+
+        // Found
+        int[] active = activeBatch[dimension];
+        if (dimension == dimensions) {
+            for (int i = 0; i < count; i++) {
+                result[active[i]] = true;
+            }
+            return;
+        }
+
+        // Prune and determine the range of children
+        int filtered = 0;
+        int min = heights[dimension];
+        int max = -1;
+        for (int i = 0; i < count; i++) {
+            int query = active[i];
+            int[] element = elements[query];
+            if (!result[query] && (lessOrEqual ? mayContainLessOrEqual(element, dimension, offset) : 
+                                                 mayContainGreaterOrEqual(element, dimension, offset))) {
+                active[filtered++] = query;
+                min = Math.min(min, element[dimension]);
+                max = Math.max(max, element[dimension]);
+            }
+        }
+        int from = lessOrEqual ? 0 : min;
+        int to = lessOrEqual ? max : heights[dimension] - 1;
+
+        // Descend
+        int[] next = activeBatch[dimension + 1];
+        for (int child = from; child <= to; child++) {
+            int pointer = buffer.get(offset + child);
+            if (pointer != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                int size = 0;
+                for (int i = 0; i < filtered; i++) {
+                    int query = active[i];
+                    int value = elements[query][dimension];
+                    if (!result[query] && (lessOrEqual ? child <= value : child >= value)) {
+                        next[size++] = query;
+                    }
+                }
+                if (size > 0) {
+                    containsBatch(elements, size, dimension + 1, pointer, lessOrEqual, result);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes the given identifier into the given array. Digits are extracted incrementally,
+     * starting with the most significant dimension.
+     * @param id
+     * @param result
+     * @return
+     */
+    private int[] decode(long id, int[] result) {
+        if (dictionary != null) {
+            return dictionary.decode(id, result);
+        }
+        if (shifts != null) {
+            for (int i = 0; i < dimensions; i++) {
+                result[i] = (int) (id >>> shifts[i]) & masks[i];
+            }
+            return result;
+        }
+        for (int i = 0; i < dimensions; i++) {
+            long mult = multiplier[i];
+            int digit = (int) (id / mult);
+            result[i] = digit;
+            id -= digit * mult;
+        }
+        return result;
+    }
+
+    /**
+     * Merges the given bounds into the given summary
+     * @param summary
+     * @param min
+     * @param max
+     * @return
+     */
+    int merge(int summary, int min, int max) {
+        if (summary != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+            min = Math.min(min, getMin(summary));
+            max = Math.max(max, getMax(summary));
+        }
+        return ((max + 1) << 16) | min;
+    }
+
+    /**
+     * Adds an element to this trie, maintaining an antichain. If the element is already covered by
+     * the trie, nothing is changed and <code>false</code> is returned. Otherwise all elements that are
+     * covered by the new element are removed before it is stored.
+     * @param element
+     * @return
+     */
+    boolean add(int[] element) {
+        if (contains(element)) {
+            return false;
+        }
+        clear(element);
+        put(element);
+        return true;
+    }
+
+    /**
+     * Adds the element with the given identifier to this trie, maintaining an antichain.
+     * @param id
+     * @return
+     * @see #add(int[])
+     */
+    boolean add(long id) {
+        return add(decode(id));
+    }
+
     /**
      * Clears all above/below this element
      * @param element
      */
     void clear(int[] element) {
         this.clear(element, 0, 0);
-        
-        // Compaction
-        double utilization = (double)used / (double)buffer.memory.length;
-        if (utilization < COMPACTION_THRESHOLD) {
-            compactify();
-        }
+        this.compactifyIfRequired();
     }
 
     /**
@@ -155,12 +360,62 @@ abstract class JHPLTrie {
         return contains(node, 0, 0);
     }
     
+    /**
+     * Queries this trie for the element with the given identifier
+     * @param id
+     * @return
+     */
+    boolean contains(long id) {
+        return contains(decode(id));
+    }
+
+    /**
+     * Queries this trie for a batch of elements with the given identifiers
+     * @param ids
+     * @param n The number of identifiers
+     * @param result Whether each element is contained
+     */
+    void contains(long[] ids, int n, boolean[] result) {
+        for (int i = 0; i < n; i++) {
+            result[i] = contains(ids[i]);
+        }
+    }
+
+    /**
+     * Decodes the given identifier into a buffer that is reused by subsequent calls.
+     * @param id
+     * @return
+     */
+    int[] decode(long id) {
+        return decode(id, decoded);
+    }
+
+    /**
+     * Decodes the given identifiers into a buffer that is reused by subsequent calls.
+     * @param ids
+     * @param n
+     * @return
+     */
+    int[][] decode(long[] ids, int n) {
+        if (decodedBatch.length < n) {
+            int[][] batch = Arrays.copyOf(decodedBatch, Math.max(n, decodedBatch.length * 2));
+            for (int i = decodedBatch.length; i < batch.length; i++) {
+                batch[i] = new int[dimensions];
+            }
+            decodedBatch = batch;
+        }
+        for (int i = 0; i < n; i++) {
+            decode(ids[i], decodedBatch[i]);
+        }
+        return decodedBatch;
+    }
+
     /**
      * Returns the memory consumption in bytes
      * @return
      */
     long getByteSize() {
-        return this.buffer.memory.length * 4;
+        return this.buffer.getByteSize();
     }
     
     /**
@@ -170,6 +425,33 @@ abstract class JHPLTrie {
     int getLevels() {
         return this.levels;
     }
+    
+    /**
+     * Returns the maximal index stored in the given summary
+     * @param summary
+     * @return
+     */
+    int getMax(int summary) {
+        return (summary >>> 16) - 1;
+    }
+
+    /**
+     * Returns the minimal index stored in the given summary
+     * @param summary
+     * @return
+     */
+    int getMin(int summary) {
+        return summary & SUMMARY_LIMIT;
+    }
+
+    /**
+     * Returns the number of memory units needed for a node of the given dimension
+     * @param dimension
+     * @return
+     */
+    int getNodeSize(int dimension) {
+        return summaries ? heights[dimension] + dimensions - dimension : heights[dimension];
+    }
 
 
     /**
@@ -208,7 +490,7 @@ abstract class JHPLTrie {
                     }
                     
                     // Check and increment
-                    int mem = buffer.memory[pointers.peek() + offsets.peek()];
+                    int mem = buffer.get(pointers.peek() + offsets.peek());
                     offsets.inc();
                 
                     // If available
@@ -282,7 +564,7 @@ abstract class JHPLTrie {
                     }
                     
                     // Check and increment
-                    int mem = buffer.memory[pointers.peek() + offsets.peek()];
+                    int mem = buffer.get(pointers.peek() + offsets.peek());
                     offsets.inc();
                     
                     // Available
@@ -349,7 +631,7 @@ abstract class JHPLTrie {
                     }
                     
                     // Check and increment
-                    int mem = buffer.memory[pointers.peek() + offsets.peek()];
+                    int mem = buffer.get(pointers.peek() + offsets.peek());
                     offsets.inc();
                 
                     // If available
@@ -372,6 +654,69 @@ abstract class JHPLTrie {
         };
     }
 
+    /**
+     * Returns whether the subtrie of the given node may contain an element that is greater than or equal
+     * to the given element in all remaining dimensions. Without summaries, this always returns <code>true</code>.
+     * @param element
+     * @param dimension
+     * @param offset
+     * @return
+     */
+    boolean mayContainGreaterOrEqual(int[] element, int dimension, int offset) {
+        if (summaries) {
+            int pointer = offset + heights[dimension];
+            for (int i = dimension; i < dimensions; i++) {
+                int summary = buffer.get(pointer++);
+                if (summary == JHPLBuffer.FLAG_NOT_AVAILABLE || getMax(summary) < element[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the subtrie of the given node may contain an element that is less than or equal
+     * to the given element in all remaining dimensions. Without summaries, this always returns <code>true</code>.
+     * @param element
+     * @param dimension
+     * @param offset
+     * @return
+     */
+    boolean mayContainLessOrEqual(int[] element, int dimension, int offset) {
+        if (summaries) {
+            int pointer = offset + heights[dimension];
+            for (int i = dimension; i < dimensions; i++) {
+                int summary = buffer.get(pointer++);
+                if (summary == JHPLBuffer.FLAG_NOT_AVAILABLE || getMin(summary) > element[i]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Answers a batch of queries in a single traversal of this trie. Each node is visited at most once
+     * and all queries that need to descend into a child are passed on together. Results must have been
+     * initialized with <code>false</code>.
+     * 
+     * @param elements The queries
+     * @param n The number of queries
+     * @param lessOrEqual Whether to search for elements which are less than or equal to the queries, 
+     *                    or for elements which are greater than or equal to the queries
+     * @param result
+     */
+    void containsBatch(int[][] elements, int n, boolean lessOrEqual, boolean[] result) {
+        if (activeBatch.length == 0 || activeBatch[0].length < n) {
+            activeBatch = new int[dimensions + 1][Math.max(n, activeBatch.length == 0 ? 0 : activeBatch[0].length * 2)];
+        }
+        for (int i = 0; i < n; i++) {
+            activeBatch[0][i] = i;
+        }
+        containsBatch(elements, n, 0, 0, lessOrEqual, result);
+    }
+
     /**
      * Puts an element into this trie
      * @param element
@@ -379,6 +724,70 @@ abstract class JHPLTrie {
     void put(int[] element) {
         put(element, 0, 0);
     }
+    
+    /**
+     * Puts the element with the given identifier into this trie
+     * @param id
+     */
+    void put(long id) {
+        put(decode(id));
+    }
+
+    /**
+     * Recomputes the summary of the given node from its children
+     * @param dimension
+     * @param offset
+     */
+    void resummarize(int dimension, int offset) {
+        
+        // Reset
+        int pointer = offset + heights[dimension];
+        for (int i = dimension; i < dimensions; i++) {
+            buffer.set(pointer + i - dimension, JHPLBuffer.FLAG_NOT_AVAILABLE);
+        }
+        
+        // Merge children
+        for (int i = 0; i < heights[dimension]; i++) {
+            int child = buffer.get(offset + i);
+            if (child != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                buffer.set(pointer, merge(buffer.get(pointer), i, i));
+                if (dimension < dimensions - 1) {
+                    int childPointer = child + heights[dimension + 1];
+                    for (int j = dimension + 1; j < dimensions; j++) {
+                        int summary = buffer.get(childPointer++);
+                        buffer.set(pointer + j - dimension, merge(buffer.get(pointer + j - dimension), getMin(summary), getMax(summary)));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the given element to the summary of the given node
+     * @param element
+     * @param dimension
+     * @param offset
+     */
+    void summarize(int[] element, int dimension, int offset) {
+        int pointer = offset + heights[dimension];
+        for (int i = dimension; i < dimensions; i++) {
+            buffer.set(pointer, merge(buffer.get(pointer), element[i], element[i]));
+            pointer++;
+        }
+    }
+
+    /**
+     * Returns the number of elements stored in this trie. This is an O(#elements) operation.
+     * @return
+     */
+    int size() {
+        int size = 0;
+        Iterator<int[]> iterator = this.iterator();
+        while (iterator.next() != null) {
+            size++;
+        }
+        return size;
+    }
 
     /**
      * To string method
@@ -387,8 +796,8 @@ abstract class JHPLTrie {
      */
     String toString(String prefix1, String prefix2) {
         
-        int allocated = buffer.memory.length * 4;
-        int used = this.used * 4;
+        long allocated = buffer.getByteSize();
+        long used = this.used * 4L;
         double relative = (double)used / (double)allocated * 100d;
         DecimalFormat format = new DecimalFormat("##0.00000");
         
@@ -399,7 +808,7 @@ abstract class JHPLTrie {
         builder.append(prefix2).append("|   ├── Used: ").append(used).append(" [bytes]\n");
         builder.append(prefix2).append("|   └── Relative: ").append(format.format(relative)).append(" [%]\n");
         builder.append(prefix2).append("├── Buffer\n");
-        builder.append(prefix2).append("|   └── ").append(Arrays.toString(buffer.memory)).append("\n");
+        builder.append(prefix2).append("|   └── ").append(buffer.toString()).append("\n");
         builder.append(prefix2).append("└── Tree\n");
         builder.append(toString(prefix2 + "    ", false, 0, 0));
         builder.append(prefix2).append("    └── [EOT]\n");
@@ -0,0 +1,275 @@
+/* ******************************************************************************
+ * Copyright (c) 2015 Fabian Prasser.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ * Fabian Prasser - initial API and implementation
+ * ****************************************************************************
+ */
+package de.linearbits.jhpl;
+
+import java.util.Iterator;
+
+import de.linearbits.jhpl.JHPLIterator.LongIterator;
+
+/**
+ * This class implements a facade for a single predictive property, which stores the antichain in a list,
+ * in a flat buffer or in a trie. It keeps track of the number of queries and updates as well as of
+ * the length of the antichain and periodically migrates its content to the representation that is
+ * estimated to be the cheapest for the observed access pattern.<br>
+ * <br>
+ * The cost model estimates the number of memory units touched per operation:
+ * <ul>
+ *  <li>List: a scan over all elements, each behind a reference</li>
+ *  <li>Flat buffer: a scan over all elements stored consecutively, plus some constant overhead</li>
+ *  <li>Trie: a traversal touching a number of nodes that grows logarithmically with the antichain</li>
+ * </ul>
+ * Updates scan twice (query and clear) or, for the trie, additionally allocate a new path. A migration
+ * is only performed if the savings projected for the next interval exceed the costs of copying the antichain.
+ *
+ * @author Fabian Prasser
+ */
+class JHPLTrieAdaptive extends JHPLTrie {
+
+    /**
+     * The representations supported by this class
+     *
+     * @author Fabian Prasser
+     */
+    static enum Representation {
+        /** A list of arrays */
+        LIST,
+        /** A flat buffer */
+        FLAT,
+        /** A trie augmented with summaries */
+        TRIE
+    }
+
+    /** Constant: cost of one scanned dimension in the flat buffer */
+    private static final double COST_FLAT_ELEMENT = 1d;
+    /** Constant: constant overhead per dimension of the flat buffer */
+    private static final double COST_FLAT_BASE    = 2d;
+    /** Constant: cost of one scanned dimension in the list, including the indirection */
+    private static final double COST_LIST_ELEMENT = 2d;
+    /** Constant: cost of copying one dimension of an element during migration */
+    private static final double COST_MIGRATION    = 4d;
+    /** Constant: cost of one visited node in the trie */
+    private static final double COST_TRIE_NODE    = 4d;
+    /** Constant: number of operations after which the representation is re-evaluated */
+    private static final int    INTERVAL          = 64;
+
+    /** The current representation */
+    private JHPLTrie            delegate;
+    /** The number of operations in the current interval */
+    private int                 operations;
+    /** The number of queries in the current interval */
+    private int                 queries;
+    /** The current representation */
+    private Representation      representation;
+    /** Whether we store minimal elements of an upwards-closed set */
+    private final boolean       upwards;
+
+    /**
+     * Constructs a new instance
+     * @param lattice
+     * @param upwards Whether the facade represents a property that is predictive for successors
+     */
+    JHPLTrieAdaptive(Lattice<?, ?> lattice, boolean upwards) {
+        super(lattice);
+        this.upwards = upwards;
+        this.representation = Representation.LIST;
+        this.delegate = create(this.representation);
+    }
+
+    @Override
+    boolean add(int[] element) {
+        operation(1);
+        return delegate.add(element);
+    }
+
+    @Override
+    boolean clear(int[] element, int dimension, int offset) {
+        return delegate.clear(element, dimension, offset);
+    }
+
+    @Override
+    void clear(int[] element) {
+        operation(1);
+        delegate.clear(element);
+    }
+
+    @Override
+    void compactify() {
+        delegate.compactify();
+    }
+
+    @Override
+    boolean contains(int[] element, int dimension, int offset) {
+        return delegate.contains(element, dimension, offset);
+    }
+
+    @Override
+    boolean contains(int[] node) {
+        queries++;
+        operation(1);
+        return delegate.contains(node);
+    }
+
+    @Override
+    void contains(long[] ids, int n, boolean[] result) {
+        queries += n;
+        operation(n);
+        delegate.contains(ids, n, result);
+    }
+
+    @Override
+    long getByteSize() {
+        return delegate.getByteSize();
+    }
+
+    /**
+     * Returns the current representation
+     * @return
+     */
+    Representation getRepresentation() {
+        return representation;
+    }
+
+    @Override
+    Iterator<int[]> iterator() {
+        return delegate.iterator();
+    }
+
+    @Override
+    Iterator<int[]> iterator(int level) {
+        return delegate.iterator(level);
+    }
+
+    @Override
+    LongIterator iteratorLong(long[] multiplier) {
+        return delegate.iteratorLong(multiplier);
+    }
+
+    @Override
+    JHPLTrie newInstance() {
+        return new JHPLTrieAdaptive(this.lattice, this.upwards);
+    }
+
+    @Override
+    void put(int[] element) {
+        operation(1);
+        delegate.put(element);
+    }
+
+    @Override
+    void put(int[] element, int dimension, int offset) {
+        delegate.put(element, dimension, offset);
+    }
+
+    @Override
+    int size() {
+        return delegate.size();
+    }
+
+    @Override
+    String toString(String prefix1, String prefix2) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(prefix1).append("Adaptive (").append(representation).append(")\n");
+        builder.append(delegate.toString(prefix2 + "└── ", prefix2 + "    "));
+        return builder.toString();
+    }
+
+    /**
+     * Creates an empty instance of the given representation
+     * @param representation
+     * @return
+     */
+    private JHPLTrie create(Representation representation) {
+        switch (representation) {
+        case LIST:
+            return new JHPLList(lattice, upwards);
+        case FLAT:
+            return new JHPLFlat(lattice, upwards);
+        default:
+            return upwards ? new JHPLTrieLEQ(lattice) : new JHPLTrieGEQ(lattice);
+        }
+    }
+
+    /**
+     * Estimates the costs of the given access pattern for the given representation
+     * @param representation
+     * @param size
+     * @param queries
+     * @param updates
+     * @return
+     */
+    private double estimate(Representation representation, int size, int queries, int updates) {
+        double query;
+        double update;
+        switch (representation) {
+        case LIST:
+            query = COST_LIST_ELEMENT * size * dimensions;
+            update = 2d * query;
+            break;
+        case FLAT:
+            query = (COST_FLAT_BASE + COST_FLAT_ELEMENT * size) * dimensions;
+            update = 2d * query;
+            break;
+        default:
+            query = COST_TRIE_NODE * dimensions * (1d + Math.log(size + 1) / Math.log(2d));
+            update = 3d * query;
+        }
+        return query * queries + update * updates;
+    }
+
+    /**
+     * Re-evaluates the representation and migrates the content if required
+     */
+    private void evaluate() {
+
+        // Estimate. All representations track their length, so this is cheap
+        int size = delegate.size();
+        int updates = operations - queries;
+        Representation best = representation;
+        double current = estimate(representation, size, queries, updates);
+        double cheapest = current;
+        for (Representation candidate : Representation.values()) {
+            double cost = estimate(candidate, size, queries, updates);
+            if (cost < cheapest) {
+                cheapest = cost;
+                best = candidate;
+            }
+        }
+
+        // Reset
+        operations = 0;
+        queries = 0;
+
+        // Migrate
+        if (best != representation && current - cheapest > COST_MIGRATION * size * dimensions) {
+            JHPLTrie other = create(best);
+            Iterator<int[]> iterator = delegate.iterator();
+            int[] element = iterator.next();
+            while (element != null) {
+                other.put(element);
+                element = iterator.next();
+            }
+            delegate = other;
+            representation = best;
+        }
+    }
+
+    /**
+     * Tracks the given number of operations
+     * @param count
+     */
+    private void operation(int count) {
+        operations += count;
+        if (operations >= INTERVAL) {
+            evaluate();
+        }
+    }
+}
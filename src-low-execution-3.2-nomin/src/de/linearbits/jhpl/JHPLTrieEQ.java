@@ -40,13 +40,13 @@ class JHPLTrieEQ extends JHPLTrie{
 
         // Terminate
         if (dimension == dimensions - 1) {
-            buffer.memory[elementOffset] = JHPLBuffer.FLAG_NOT_AVAILABLE;
+            buffer.set(elementOffset, JHPLBuffer.FLAG_NOT_AVAILABLE);
             // Recursion
         } else {
-            int pointer = buffer.memory[elementOffset];
+            int pointer = buffer.get(elementOffset);
             if (pointer != JHPLBuffer.FLAG_NOT_AVAILABLE) {
                 if (!clear(element, dimension + 1, pointer)) {
-                    buffer.memory[elementOffset] = JHPLBuffer.FLAG_NOT_AVAILABLE;
+                    buffer.set(elementOffset, JHPLBuffer.FLAG_NOT_AVAILABLE);
                     used -= heights[dimension + 1];
                 }
             }
@@ -54,7 +54,7 @@ class JHPLTrieEQ extends JHPLTrie{
 
         // Return
         for (int i = offset; i < offset + heights[dimension]; i++) {
-            if (buffer.memory[i] != JHPLBuffer.FLAG_NOT_AVAILABLE) { return true; }
+            if (buffer.get(i) != JHPLBuffer.FLAG_NOT_AVAILABLE) { return true; }
         }
         return false;
     }
@@ -78,7 +78,7 @@ class JHPLTrieEQ extends JHPLTrie{
             offset += element[dimension];
     
             // Find
-            int pointer = buffer.memory[offset];
+            int pointer = buffer.get(offset);
     
             // Terminate
             if (pointer == JHPLBuffer.FLAG_NOT_AVAILABLE) {
@@ -105,17 +105,76 @@ class JHPLTrieEQ extends JHPLTrie{
         offset += element[dimension];
         
         if (dimension == dimensions - 1) {
-            buffer.memory[offset] = JHPLBuffer.FLAG_AVAILABLE;
+            buffer.set(offset, JHPLBuffer.FLAG_AVAILABLE);
             return;
         } 
         
-        if (buffer.memory[offset] == JHPLBuffer.FLAG_NOT_AVAILABLE){
+        if (buffer.get(offset) == JHPLBuffer.FLAG_NOT_AVAILABLE){
             int pointer = buffer.allocate(heights[dimension + 1]);
             used += heights[dimension + 1];
-            buffer.memory[offset] = pointer;
+            buffer.set(offset, pointer);
         }
         
-        put(element, dimension + 1, buffer.memory[offset]);
+        put(element, dimension + 1, buffer.get(offset));
+    }
+
+    @Override
+    boolean contains(long id) {
+
+        // Walk the trie while extracting the digits of the identifier
+        int offset = 0;
+        for (int dimension = 0; dimension < dimensions; dimension++) {
+            int digit;
+            if (dictionary != null) {
+                digit = dictionary.get(id, dimension);
+            } else if (shifts != null) {
+                digit = (int) (id >>> shifts[dimension]) & masks[dimension];
+            } else {
+                long mult = multiplier[dimension];
+                digit = (int) (id / mult);
+                id -= digit * mult;
+            }
+            int pointer = buffer.get(offset + digit);
+            if (pointer == JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                return false;
+            }
+            offset = pointer;
+        }
+        return true;
+    }
+
+    @Override
+    void put(long id) {
+
+        // Walk the trie while extracting the digits of the identifier
+        int offset = 0;
+        long remainder = id;
+        for (int dimension = 0; dimension < dimensions - 1; dimension++) {
+            int digit;
+            if (dictionary != null) {
+                digit = dictionary.get(id, dimension);
+            } else if (shifts != null) {
+                digit = (int) (id >>> shifts[dimension]) & masks[dimension];
+            } else {
+                long mult = multiplier[dimension];
+                digit = (int) (remainder / mult);
+                remainder -= digit * mult;
+            }
+            offset += digit;
+            if (buffer.get(offset) == JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                int pointer = buffer.allocate(heights[dimension + 1]);
+                used += heights[dimension + 1];
+                buffer.set(offset, pointer);
+            }
+            offset = buffer.get(offset);
+        }
+        int digit;
+        if (dictionary != null) {
+            digit = dictionary.get(id, dimensions - 1);
+        } else {
+            digit = shifts != null ? (int) id & masks[dimensions - 1] : (int) remainder;
+        }
+        buffer.set(offset + digit, JHPLBuffer.FLAG_AVAILABLE);
     }
 
     @Override
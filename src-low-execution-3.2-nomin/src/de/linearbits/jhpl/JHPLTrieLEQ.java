@@ -11,6 +11,8 @@
  */
 package de.linearbits.jhpl;
 
+import java.util.Arrays;
+
 
 /**
  * This class implements a simple trie for integers that is materialized in a backing integer array
@@ -18,41 +20,71 @@ package de.linearbits.jhpl;
  */
 class JHPLTrieLEQ extends JHPLTrie {
 
+    /** Number of elements */
+    private int elements;
+
     /**
      * Constructs a new trie
      * @param lattice
      */
     JHPLTrieLEQ(Lattice<?, ?> lattice) {
-        super(lattice, false);
+        super(lattice, false, true);
+    }
+
+    @Override
+    boolean add(int[] element) {
+
+        // Search for covering elements and clear covered elements in a single descent
+        boolean lessOrEqual = mayContainLessOrEqual(element, 0, 0);
+        boolean greaterOrEqual = mayContainGreaterOrEqual(element, 0, 0);
+        if ((lessOrEqual || greaterOrEqual) && add(element, 0, 0, lessOrEqual, greaterOrEqual) == ADD_COVERED) {
+            return false;
+        }
+        compactifyIfRequired();
+        put(element);
+        return true;
     }
 
     @Override
     boolean clear(int[] element, int dimension, int offset) {
 
+        // Nothing to clear beneath this node
+        if (!mayContainGreaterOrEqual(element, dimension, offset)) {
+            return true;
+        }
+
         // Init
         int elementOffset = offset + element[dimension];
 
         // Terminate
         if (dimension == dimensions - 1) {
             for (int i = 0; i < heights[dimension] - element[dimension]; i++) {
-                buffer.memory[elementOffset + i] = JHPLBuffer.FLAG_NOT_AVAILABLE;
+                if (buffer.get(elementOffset + i) != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                    buffer.set(elementOffset + i, JHPLBuffer.FLAG_NOT_AVAILABLE);
+                    elements--;
+                }
             }
             // Recursion
         } else {
             for (int i = 0; i < heights[dimension] - element[dimension]; i++) {
-                int pointer = buffer.memory[elementOffset + i];
+                int pointer = buffer.get(elementOffset + i);
                 if (pointer != JHPLBuffer.FLAG_NOT_AVAILABLE) {
                     if (!clear(element, dimension + 1, pointer)) {
-                        buffer.memory[elementOffset + i] = JHPLBuffer.FLAG_NOT_AVAILABLE;
-                        used -= heights[dimension + 1];
+                        buffer.set(elementOffset + i, JHPLBuffer.FLAG_NOT_AVAILABLE);
+                        used -= getNodeSize(dimension + 1);
                     }
                 }
             }
         }
 
+        // Update summary
+        if (summaries) {
+            resummarize(dimension, offset);
+        }
+
         // Return
         for (int i = offset; i < offset + heights[dimension]; i++) {
-            if (buffer.memory[i] != JHPLBuffer.FLAG_NOT_AVAILABLE) { return true; }
+            if (buffer.get(i) != JHPLBuffer.FLAG_NOT_AVAILABLE) { return true; }
         }
         return false;
     }
@@ -61,10 +93,12 @@ class JHPLTrieLEQ extends JHPLTrie {
     boolean contains(int[] element, int dimension, int offset) {
 
         if (dimension == dimensions) {
-            return true;          
+            return true;
+        } else if (!mayContainLessOrEqual(element, dimension, offset)) {
+            return false;          
         } else {
             for (int i = element[dimension]; i >= 0; i--) {
-                int pointer = buffer.memory[offset + i];
+                int pointer = buffer.get(offset + i);
                 if (pointer != JHPLBuffer.FLAG_NOT_AVAILABLE && contains(element, dimension + 1, pointer)) { 
                     return true; 
                 }
@@ -73,27 +107,117 @@ class JHPLTrieLEQ extends JHPLTrie {
         return false;
     }
     
+    @Override
+    void contains(long[] ids, int n, boolean[] result) {
+        Arrays.fill(result, 0, n, false);
+        containsBatch(decode(ids, n), n, true, result);
+    }
+
     @Override
     void put(int[] element, int dimension, int offset) {
        
+        if (summaries) {
+            summarize(element, dimension, offset);
+        }
         offset += element[dimension];
         
         if (dimension == dimensions - 1) {
-            buffer.memory[offset] = JHPLBuffer.FLAG_AVAILABLE;
+            if (buffer.get(offset) == JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                elements++;
+            }
+            buffer.set(offset, JHPLBuffer.FLAG_AVAILABLE);
             return;
         } 
         
-        if (buffer.memory[offset] == JHPLBuffer.FLAG_NOT_AVAILABLE){
-            int pointer = buffer.allocate(heights[dimension + 1]);
-            used += heights[dimension + 1];
-            buffer.memory[offset] = pointer;
+        if (buffer.get(offset) == JHPLBuffer.FLAG_NOT_AVAILABLE){
+            int pointer = buffer.allocate(getNodeSize(dimension + 1));
+            used += getNodeSize(dimension + 1);
+            buffer.set(offset, pointer);
         }
         
-        put(element, dimension + 1, buffer.memory[offset]);
+        put(element, dimension + 1, buffer.get(offset));
     }
 
     @Override
     JHPLTrie newInstance() {
         return new JHPLTrieLEQ(this.lattice);
     }
+
+    @Override
+    int size() {
+        return elements;
+    }
+
+    /**
+     * Searches the subtrie of the given node for an element covering the given element and clears all
+     * elements covered by it. As the trie stores an antichain, no element can be cleared if a covering
+     * element exists, apart from the element itself, which is then left in place.
+     * @param element
+     * @param dimension
+     * @param offset
+     * @param lessOrEqual Whether the subtrie may contain elements less than or equal to the element
+     * @param greaterOrEqual Whether the subtrie may contain elements greater than or equal to the element
+     * @return
+     */
+    private int add(int[] element, int dimension, int offset, boolean lessOrEqual, boolean greaterOrEqual) {
+
+        // Init
+        int elementOffset = offset + element[dimension];
+        int before = elements;
+
+        // Terminate
+        if (dimension == dimensions - 1) {
+            if (lessOrEqual) {
+                for (int i = offset; i <= elementOffset; i++) {
+                    if (buffer.get(i) != JHPLBuffer.FLAG_NOT_AVAILABLE) { return ADD_COVERED; }
+                }
+            }
+            if (greaterOrEqual) {
+                for (int i = elementOffset; i < offset + heights[dimension]; i++) {
+                    if (buffer.get(i) != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                        buffer.set(i, JHPLBuffer.FLAG_NOT_AVAILABLE);
+                        elements--;
+                    }
+                }
+            }
+            // Recursion
+        } else {
+            int from = lessOrEqual ? 0 : element[dimension];
+            int to = greaterOrEqual ? heights[dimension] - 1 : element[dimension];
+            for (int i = from; i <= to; i++) {
+                int pointer = buffer.get(offset + i);
+                if (pointer != JHPLBuffer.FLAG_NOT_AVAILABLE) {
+                    boolean childLessOrEqual = lessOrEqual && i <= element[dimension] &&
+                                               mayContainLessOrEqual(element, dimension + 1, pointer);
+                    boolean childGreaterOrEqual = greaterOrEqual && i >= element[dimension] &&
+                                                  mayContainGreaterOrEqual(element, dimension + 1, pointer);
+                    if (childLessOrEqual || childGreaterOrEqual) {
+                        int result = add(element, dimension + 1, pointer, childLessOrEqual, childGreaterOrEqual);
+                        if (result == ADD_COVERED) {
+                            return ADD_COVERED;
+                        } else if (result == ADD_EMPTY) {
+                            buffer.set(offset + i, JHPLBuffer.FLAG_NOT_AVAILABLE);
+                            used -= getNodeSize(dimension + 1);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Nothing cleared
+        if (elements == before) {
+            return ADD_NOT_EMPTY;
+        }
+
+        // Update summary
+        if (summaries) {
+            resummarize(dimension, offset);
+        }
+
+        // Return
+        for (int i = offset; i < offset + heights[dimension]; i++) {
+            if (buffer.get(i) != JHPLBuffer.FLAG_NOT_AVAILABLE) { return ADD_NOT_EMPTY; }
+        }
+        return ADD_EMPTY;
+    }
 }
\ No newline at end of file
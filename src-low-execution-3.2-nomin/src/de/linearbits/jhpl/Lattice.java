@@ -12,7 +12,8 @@
 package de.linearbits.jhpl;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -56,18 +57,101 @@ import de.linearbits.jhpl.PredictiveProperty.Direction;
  */
 public class Lattice<T, U> {
 
+    /**
+     * Data structure used for representing predictive properties
+     * 
+     * @author Fabian Prasser
+     */
+    public static enum Backend {
+        /** Tries storing all elements of the antichain, augmented with summaries*/
+        TRIE,
+        /** K-d trees storing all elements of the antichain, augmented with bounding boxes*/
+        KD_TREE,
+        /** Lists, flat buffers or tries, chosen per property at runtime based on the access pattern*/
+        ADAPTIVE,
+        /** Tries in which identical subtries are shared, which saves memory in high-dimensional lattices*/
+        DAG
+    }
+
+    /**
+     * Encoding of nodes as identifiers
+     * 
+     * @author Fabian Prasser
+     */
+    public static enum Encoding {
+        /** Mixed-radix numbers, i.e. consecutive identifiers for all nodes*/
+        DENSE,
+        /** One bit field per dimension, which allows decoding with shifts and masks. Falls back to 
+         *  dense identifiers, if the fields require more than 62 bits or if dense identifiers fit 
+         *  into an int while bit-packed identifiers would not*/
+        PACKED,
+        /** Identifiers assigned in the order in which nodes are accessed for the first time. Supports
+         *  lattices with more than Long.MAX_VALUE nodes, of which only a fraction can be touched. 
+         *  Used automatically, if the lattice is too large for the other encodings*/
+        SPARSE
+    }
+
+    /**
+     * Memory used for backing tries
+     * 
+     * @author Fabian Prasser
+     */
+    public static enum Memory {
+        /** Integer arrays on the Java heap*/
+        HEAP,
+        /** Direct byte buffers outside of the Java heap*/
+        DIRECT,
+        /** Memory-mapped temporary files*/
+        MAPPED
+    }
+
+    /** Constant */
+    private static final int                                INITIAL_PROPERTIES      = 8;
+    /** Constant */
+    private static final int                                INITIAL_FILTER_CAPACITY = 1 << 16;
+    /** Constant: number of updates after which the byte budget is checked */
+    private static final int                                BUDGET_INTERVAL         = 256;
+    /** Constant: number of levels below the frontier from which on information may be evicted */
+    private static final int                                EVICTION_DISTANCE       = 2;
+    /** Constant */
+    private static final long                               NO_BUDGET               = Long.MAX_VALUE;
+
     /** Data */
     private final JHPLData<T, U>                            data;
     /** All materialized nodes */
     private final JHPLTrie                                  master;
     /** Nodes */
     private final JHPLNodes<T>                              nodes;
-    /** Tries for properties */
-    private final Map<PredictiveProperty, JHPLTrie>         propertiesDown;
-    /** Tries for properties */
-    private final Map<PredictiveProperty, JHPLTrie>         propertiesUp;
-    /** Tries for properties */
-    private final Map<PredictiveProperty, JHPLMap<Boolean>> propertiesNone;
+    /** Registered properties, indexed by slot */
+    private PredictiveProperty[]                            properties;
+    /** Tries for properties, indexed by slot */
+    private JHPLTrie[]                                      propertiesDown;
+    /** Tries for properties, indexed by slot */
+    private JHPLTrie[]                                      propertiesUp;
+    /** Bit masks for non-predictive properties, indexed by slot */
+    private long[]                                          propertiesNone;
+    /** Number of registered properties */
+    private int                                             numProperties;
+    /** Number of registered non-predictive properties */
+    private int                                             numPropertiesNone;
+    /** All tries, for checking whether a node has any property */
+    private JHPLTrie[]                                      tries;
+    /** Number of tries */
+    private int                                             numTries;
+    /** Summary of the bit masks of all non-predictive properties */
+    private long                                            maskNone;
+    /** Slots of all registered properties */
+    private final Map<PredictiveProperty, Integer>          registry;
+    /** The property that has been looked up last */
+    private PredictiveProperty                              lastProperty       = null;
+    /** The slot of the property that has been looked up last */
+    private int                                             lastSlot           = -1;
+    /** Backend for properties registered in the future */
+    private Backend                                         backend            = Backend.TRIE;
+    /** Memory used for backing tries */
+    private final Memory                                    memory;
+    /** Packed flags for non-predictive properties */
+    private final JHPLFlags                                 flags;
     /** Space */
     private final JHPLSpace<T>                              space;
     /** Unsafe */
@@ -75,7 +159,29 @@ public class Lattice<T, U> {
     /** Number of nodes */
     private final long                                      numNodes;
     /** Tack modifications */
-    private boolean                                         modified = false;
+    private boolean                                         modified  = false;
+    /** Buffer for answering batches of queries */
+    private boolean[]                                       batch     = new boolean[0];
+    /** Buffer for answering batches of queries */
+    private boolean[]                                       batchDown = new boolean[0];
+    /** Optional filter for nodes stored in this lattice */
+    private JHPLFilter                                      filter;
+    /** Number of queries answered by the filter */
+    private long                                            filterQueries;
+    /** Number of queries answered by the filter without probing further data structures */
+    private long                                            filterNegatives;
+    /** The byte budget */
+    private long                                            byteBudget = NO_BUDGET;
+    /** Number of updates since the budget has been checked */
+    private int                                             budgetUpdates;
+    /** Number of flagged nodes below which no further eviction is attempted */
+    private int                                             evictionSize;
+    /** Mask of non-predictive properties that may be evicted */
+    private long                                            maskEvictable;
+    /** The highest level of a node with an evictable property */
+    private int                                             frontier;
+    /** Buffer for decoding nodes */
+    private final int[]                                     element;
 
     /**
      * Constructs a new lattice
@@ -84,7 +190,36 @@ public class Lattice<T, U> {
      */
     @SuppressWarnings("unchecked")
     public Lattice(T[]... elements) {
+        this(Memory.HEAP, elements);
+    }
+
+    /**
+     * Constructs a new lattice
+     * 
+     * @param memory The memory used for backing the tries of this lattice
+     * @param elements One array of elements per dimension, ordered from the lowest to the highest element
+     */
+    @SuppressWarnings("unchecked")
+    public Lattice(Memory memory, T[]... elements) {
+        this(memory, Encoding.DENSE, elements);
+    }
+
+    /**
+     * Constructs a new lattice
+     * 
+     * @param memory The memory used for backing the tries of this lattice
+     * @param encoding The encoding of nodes as identifiers
+     * @param elements One array of elements per dimension, ordered from the lowest to the highest element
+     */
+    @SuppressWarnings("unchecked")
+    public Lattice(Memory memory, Encoding encoding, T[]... elements) {
 
+        if (memory == null) {
+            throw new NullPointerException("Memory must not be null");
+        }
+        if (encoding == null) {
+            throw new NullPointerException("Encoding must not be null");
+        }
         if (elements == null) {
             throw new NullPointerException("Elements must not be null");
         }
@@ -111,21 +246,66 @@ public class Lattice<T, U> {
             dSize *= dimension.length;
             lSize *= dimension.length;
         }
-        if (dSize > Long.MAX_VALUE) {
-            throw new IllegalArgumentException("Lattice must not have more than Long.MAX_VALUE elements");
-        }
-        this.numNodes = lSize;
+        this.numNodes = dSize > Long.MAX_VALUE ? Long.MAX_VALUE : lSize;
         
-        this.nodes = new JHPLNodes<T>(this, elements);
+        this.memory = memory;
+        this.nodes = new JHPLNodes<T>(this, encoding, elements);
         this.space = new JHPLSpace<T>(nodes, elements);
         this.data = new JHPLData<T, U>(space, elements);
-        this.propertiesUp = new HashMap<PredictiveProperty, JHPLTrie>();
-        this.propertiesDown = new HashMap<PredictiveProperty, JHPLTrie>();
-        this.propertiesNone = new HashMap<PredictiveProperty, JHPLMap<Boolean>>();
+        this.properties = new PredictiveProperty[INITIAL_PROPERTIES];
+        this.propertiesUp = new JHPLTrie[INITIAL_PROPERTIES];
+        this.propertiesDown = new JHPLTrie[INITIAL_PROPERTIES];
+        this.propertiesNone = new long[INITIAL_PROPERTIES];
+        this.tries = new JHPLTrie[INITIAL_PROPERTIES * 2];
+        this.registry = new IdentityHashMap<PredictiveProperty, Integer>();
+        this.flags = new JHPLFlags();
         this.master = new JHPLTrieEQ(this);
         this.unsafe = new JHPLUnsafe(this);
+        this.element = new int[elements.length];
     }
         
+    /**
+     * Returns a copy of the information stored in this lattice about the given properties, 
+     * which can be used for restoring this information with {@link #restore(JHPLCheckpoint, PredictiveProperty...)}.
+     * Data associated with nodes is not included. This is an O(#nodes stored) operation, 
+     * which is meant to be called between two operations on this lattice. The checkpoint 
+     * itself is immutable and can therefore be written by another thread.
+     * @param properties
+     * @return
+     */
+    public JHPLCheckpoint checkpoint(PredictiveProperty... properties) {
+        Direction[] directions = new Direction[properties.length];
+        long[][] up = new long[properties.length][];
+        long[][] down = new long[properties.length][];
+        long[][] none = new long[properties.length][];
+        for (int i = 0; i < properties.length; i++) {
+            PredictiveProperty property = properties[i];
+            directions[i] = property.getDirection();
+            Integer slot = this.registry.get(property);
+            switch (directions[i]) {
+            case UP:
+                up[i] = slot == null ? new long[0] : toArray(this.iteratorLong(this.propertiesUp[slot]));
+                break;
+            case DOWN:
+                down[i] = slot == null ? new long[0] : toArray(this.iteratorLong(this.propertiesDown[slot]));
+                break;
+            case BOTH:
+                up[i] = slot == null ? new long[0] : toArray(this.iteratorLong(this.propertiesUp[slot]));
+                down[i] = slot == null ? new long[0] : toArray(this.iteratorLong(this.propertiesDown[slot]));
+                break;
+            default:
+                none[i] = slot == null ? new long[0] : toArray(this.propertiesNone[slot]);
+            }
+        }
+        long[] master = toArray(this.iteratorLong(this.master));
+        JHPLDictionary dictionary = this.nodes.getDictionary();
+        return new JHPLCheckpoint(this.nodes.getHeights().clone(),
+                                  this.getEncoding(),
+                                  dictionary == null ? null : dictionary.getRows(),
+                                  master,
+                                  directions, up, down, none);
+    }
+
     /**
      * Returns whether this lattice stores any information about the given node.
      * This is a guaranteed O(1) operation.
@@ -133,9 +313,33 @@ public class Lattice<T, U> {
      * @return
      */
     public boolean contains(int[] node) {
+        if (this.filter != null) {
+            long id = space().findId(node);
+            if (id == -1L || !mayContain(id)) {
+                return false;
+            }
+        }
         return master.contains(node);
     }
+
+    /**
+     * Returns whether this lattice stores any information about the node with the given identifier.
+     * This is a guaranteed O(1) operation.
+     * @param id
+     * @return
+     */
+    public boolean contains(long id) {
+        return mayContain(id) && master.contains(id);
+    }
     
+    /**
+     * Returns the encoding of nodes as identifiers actually used by this lattice
+     * @return
+     */
+    public Encoding getEncoding() {
+        return this.nodes.getEncoding();
+    }
+
     /**
      * Returns a pretty accurate estimation of the memory consumed by this lattice
      * @return
@@ -144,18 +348,62 @@ public class Lattice<T, U> {
         long size = 0;
         size += this.data.getByteSize();
         size += this.master.getByteSize();
-        for (JHPLTrie trie : this.propertiesUp.values()) {
-            size += trie.getByteSize();
+        for (int i = 0; i < this.numTries; i++) {
+            size += this.tries[i].getByteSize();
         }
-        for (JHPLTrie trie : this.propertiesDown.values()) {
-            size += trie.getByteSize();
+        size += this.flags.getByteSize();
+        if (this.filter != null) {
+            size += this.filter.getByteSize();
         }
-        for (JHPLMap<Boolean> map : this.propertiesNone.values()) {
-            size += map.getByteSize();
+        if (this.nodes.getDictionary() != null) {
+            size += this.nodes.getDictionary().getByteSize();
         }
         return size;
     }
     
+    /**
+     * Returns the backend used for predictive properties registered in the future
+     * @return
+     */
+    public Backend getBackend() {
+        return this.backend;
+    }
+
+    /**
+     * Returns the memory used for backing the tries of this lattice
+     * @return
+     */
+    public Memory getMemory() {
+        return this.memory;
+    }
+
+    /**
+     * Returns the byte budget, <code>Long.MAX_VALUE</code> if there is none
+     * @return
+     * @see #setByteBudget(long)
+     */
+    public long getByteBudget() {
+        return this.byteBudget;
+    }
+
+    /**
+     * Returns the number of lookups that have been answered by the filter
+     * @return
+     * @see #setFilter(boolean)
+     */
+    public long getNumFilterQueries() {
+        return this.filterQueries;
+    }
+
+    /**
+     * Returns the number of lookups for which the filter has saved probing the underlying data structures
+     * @return
+     * @see #setFilter(boolean)
+     */
+    public long getNumSavedProbes() {
+        return this.filterNegatives;
+    }
+
     /**
      * Returns the data associated with the given node, <code>null</code> if there is none. <br>
      * <br>
@@ -176,20 +424,34 @@ public class Lattice<T, U> {
      */
     public boolean hasProperty(int[] node) {
         
-        for (PredictiveProperty property : this.propertiesUp.keySet()) {
-            if (this.propertiesUp.get(property).contains(node)){
+        if (this.maskNone != 0L) {
+            long id = space().findId(node);
+            if (id != -1L && mayContain(id) && (this.flags.get(id) & this.maskNone) != 0L) {
                 return true;
             }
         }
-        for (PredictiveProperty property : this.propertiesDown.keySet()) {
-            if (this.propertiesDown.get(property).contains(node)){
+        for (int i = 0; i < this.numTries; i++) {
+            if (this.tries[i].contains(node)) {
                 return true;
             }
         }
-        for (PredictiveProperty property : this.propertiesNone.keySet()) {
-            Boolean result = this.propertiesNone.get(property).get(space().toId(node));
-            result = result == null ? false : result;
-            return result;
+        return false;
+    }
+    
+    /**
+     * Returns whether the node with the given identifier has any property. This is a guaranteed O(1) operation.
+     * @param id
+     * @return
+     */
+    public boolean hasProperty(long id) {
+        
+        if (this.maskNone != 0L && mayContain(id) && (this.flags.get(id) & this.maskNone) != 0L) {
+            return true;
+        }
+        for (int i = 0; i < this.numTries; i++) {
+            if (this.tries[i].contains(id)) {
+                return true;
+            }
         }
         return false;
     }
@@ -203,22 +465,81 @@ public class Lattice<T, U> {
      * @return
      */
     public boolean hasProperty(int[] node, PredictiveProperty property) {
-        checkProperty(property);
+        int slot = checkProperty(property);
         this.nodes.checkNode(node);
-        if (property.getDirection() == Direction.UP) {
-            return this.propertiesUp.get(property).contains(node);
-        } else if (property.getDirection() == Direction.DOWN) {
-            return this.propertiesDown.get(property).contains(node);
-        } else if (property.getDirection() == Direction.BOTH) {
-            return (this.propertiesUp.get(property).contains(node) || 
-                    this.propertiesDown.get(property).contains(node));
-        } else {
-            Boolean result = this.propertiesNone.get(property).get(space().toId(node));
-            result = result == null ? false : result;
-            return result;
+        switch (property.getDirection()) {
+        case UP:
+            return this.propertiesUp[slot].contains(node);
+        case DOWN:
+            return this.propertiesDown[slot].contains(node);
+        case BOTH:
+            return (this.propertiesUp[slot].contains(node) || 
+                    this.propertiesDown[slot].contains(node));
+        default:
+            long id = space().findId(node);
+            return id != -1L && mayContain(id) && (this.flags.get(id) & this.propertiesNone[slot]) != 0L;
+        }
+    }
+    
+    /**
+     * Returns whether the node with the given identifier has the given property. <br>
+     * <br>
+     * This is a guaranteed O(1) operation for any node.
+     * @param id
+     * @param property
+     * @return
+     */
+    public boolean hasProperty(long id, PredictiveProperty property) {
+        int slot = checkProperty(property);
+        this.nodes.checkNode(id);
+        switch (property.getDirection()) {
+        case UP:
+            return this.propertiesUp[slot].contains(id);
+        case DOWN:
+            return this.propertiesDown[slot].contains(id);
+        case BOTH:
+            return (this.propertiesUp[slot].contains(id) || 
+                    this.propertiesDown[slot].contains(id));
+        default:
+            return mayContain(id) && (this.flags.get(id) & this.propertiesNone[slot]) != 0L;
         }
     }
     
+    /**
+     * Determines for a batch of nodes whether they have the given property. Queries are answered
+     * in a single traversal of the underlying data structure, which shares the work required for 
+     * nodes with common prefixes, e.g. the neighbours of a node.
+     * @param ids The identifiers of the nodes
+     * @param n The number of identifiers
+     * @param property
+     * @param result Whether each node has the property
+     */
+    public void hasProperty(long[] ids, int n, PredictiveProperty property, boolean[] result) {
+        int slot = checkProperty(property);
+        this.checkNodes(ids, n, result);
+        switch (property.getDirection()) {
+        case UP:
+            this.propertiesUp[slot].contains(ids, n, result);
+            break;
+        case DOWN:
+            this.propertiesDown[slot].contains(ids, n, result);
+            break;
+        case BOTH:
+            this.ensureBatch(n);
+            this.propertiesUp[slot].contains(ids, n, result);
+            this.propertiesDown[slot].contains(ids, n, this.batchDown);
+            for (int i = 0; i < n; i++) {
+                result[i] |= this.batchDown[i];
+            }
+            break;
+        default:
+            long mask = this.propertiesNone[slot];
+            for (int i = 0; i < n; i++) {
+                result[i] = mayContain(ids[i]) && (this.flags.get(ids[i]) & mask) != 0L;
+            }
+        }
+    }
+
     /** 
      * Enumerates all nodes stored in the lattice
      * @return
@@ -241,7 +562,7 @@ public class Lattice<T, U> {
      * @return
      */
     public LongIterator listNodesAsIdentifiers() {
-        return new WrappedPrimitiveLongIterator(this, this.master.iteratorLong(this.nodes.getMultiplier()));
+        return new WrappedPrimitiveLongIterator(this, this.iteratorLong(this.master));
     }
 
     /**
@@ -269,7 +590,7 @@ public class Lattice<T, U> {
     }
     
     /**
-     * Returns the number of nodes in this lattice
+     * Returns the number of nodes in this lattice, at most <code>Long.MAX_VALUE</code>
      * @return
      */
     public long numNodes(){
@@ -292,7 +613,8 @@ public class Lattice<T, U> {
         this.data.put(node, data);
 
         // Store in master trie
-        this.master.put(node);
+        this.putMaster(node);
+        this.checkBudget();
     }
     
     /**
@@ -310,32 +632,272 @@ public class Lattice<T, U> {
     public void putProperty(int[] node, PredictiveProperty property) {
 
         this.nodes.checkNode(node);
-        this.checkProperty(property);
+        int slot = this.checkProperty(property);
         this.setModified();
         
         // Store in master trie
-        this.master.put(node);
+        this.putMaster(node);
         
-        // Reduce the amount of information stored in the trie
-        if (hasProperty(node, property)) {
-            return;
+        // Store and reduce the amount of information stored in the tries
+        switch (property.getDirection()) {
+        case UP:
+            this.propertiesUp[slot].add(node);
+            break;
+        case DOWN:
+            this.propertiesDown[slot].add(node);
+            break;
+        case BOTH:
+            if (!this.propertiesUp[slot].contains(node) && !this.propertiesDown[slot].contains(node)) {
+                this.propertiesUp[slot].add(node); 
+                this.propertiesDown[slot].add(node);
+            }
+            break;
+        default:
+            this.flags.set(space().toId(node), this.propertiesNone[slot]);
+            if (this.isEvictable(slot)) {
+                this.frontier = Math.max(this.frontier, this.nodes.getLevel(node));
+            }
         }
+        this.checkBudget();
+    }
+
+    /**
+     * Stores several properties for the given node. The node is validated and stored in the master 
+     * trie only once, and all non-predictive properties are stored with a single update. Null entries 
+     * are ignored.
+     * 
+     * @param node
+     * @param properties
+     * @see #putProperty(int[], PredictiveProperty)
+     */
+    public void putProperties(int[] node, PredictiveProperty... properties) {
+        this.nodes.checkNode(node);
+        this.putProperties(node, space().toId(node), properties);
+    }
+
+    /**
+     * Stores several properties for the node with the given identifier. 
+     * 
+     * @param id
+     * @param properties
+     * @see #putProperties(int[], PredictiveProperty...)
+     */
+    public void putProperties(long id, PredictiveProperty... properties) {
+        this.nodes.checkNode(id);
+        this.putProperties(null, id, properties);
+    }
 
-        // Reduce the amount of information stored in the trie
-        removeProperty(node, property);
+    /**
+     * Stores the given property for the node with the given identifier. 
+     * 
+     * @param id
+     * @param property
+     * @see #putProperty(int[], PredictiveProperty)
+     */
+    public void putProperty(long id, PredictiveProperty property) {
+
+        this.nodes.checkNode(id);
+        int slot = this.checkProperty(property);
+        this.setModified();
         
-        if (property.getDirection() == Direction.UP) {
-            this.propertiesUp.get(property).put(node);
-        } else if (property.getDirection() == Direction.DOWN) {
-            this.propertiesDown.get(property).put(node);
-        } else if (property.getDirection() == Direction.BOTH) {
-            this.propertiesUp.get(property).put(node); 
-            this.propertiesDown.get(property).put(node);
-        } else {
-            this.propertiesNone.get(property).put(space().toId(node), true); 
+        // Store in master trie
+        this.putMaster(id);
+        
+        // Store and reduce the amount of information stored in the tries
+        switch (property.getDirection()) {
+        case UP:
+            this.propertiesUp[slot].add(id);
+            break;
+        case DOWN:
+            this.propertiesDown[slot].add(id);
+            break;
+        case BOTH:
+            if (!this.propertiesUp[slot].contains(id) && !this.propertiesDown[slot].contains(id)) {
+                this.propertiesUp[slot].add(id); 
+                this.propertiesDown[slot].add(id);
+            }
+            break;
+        default:
+            this.flags.set(id, this.propertiesNone[slot]);
+            if (this.isEvictable(slot)) {
+                this.frontier = Math.max(this.frontier, this.nodes.getLevel(id));
+            }
         }
+        this.checkBudget();
     }
-    
+
+    /**
+     * Stores the given property for a batch of nodes. Before updating the underlying data structures,
+     * all nodes are checked in a single traversal. Nodes for which the property is already implied 
+     * are skipped.
+     * 
+     * @param ids The identifiers of the nodes
+     * @param n The number of identifiers
+     * @param property
+     * @see #putProperty(long, PredictiveProperty)
+     */
+    public void putProperty(long[] ids, int n, PredictiveProperty property) {
+
+        int slot = this.checkProperty(property);
+        this.ensureBatch(n);
+        this.checkNodes(ids, n, this.batch);
+        this.setModified();
+        
+        // Store in master trie
+        for (int i = 0; i < n; i++) {
+            this.putMaster(ids[i]);
+        }
+        
+        // Store and reduce the amount of information stored in the tries
+        switch (property.getDirection()) {
+        case UP:
+            this.putProperty(this.propertiesUp[slot], ids, n);
+            break;
+        case DOWN:
+            this.putProperty(this.propertiesDown[slot], ids, n);
+            break;
+        case BOTH:
+            JHPLTrie up = this.propertiesUp[slot];
+            JHPLTrie down = this.propertiesDown[slot];
+            up.contains(ids, n, this.batch);
+            down.contains(ids, n, this.batchDown);
+            for (int i = 0; i < n; i++) {
+                long id = ids[i];
+                // Previous nodes from the batch may imply the property, too
+                if (!this.batch[i] && !this.batchDown[i] && !up.contains(id) && !down.contains(id)) {
+                    up.add(id); 
+                    down.add(id);
+                }
+            }
+            break;
+        default:
+            long mask = this.propertiesNone[slot];
+            boolean evictable = this.isEvictable(slot);
+            for (int i = 0; i < n; i++) {
+                this.flags.set(ids[i], mask);
+                if (evictable) {
+                    this.frontier = Math.max(this.frontier, this.nodes.getLevel(ids[i]));
+                }
+            }
+        }
+        this.checkBudget();
+    }
+
+    /**
+     * Stores the given property for all direct predecessors of the node with the given identifier.
+     * The node is decoded only once and neighbours are derived by modifying a single coordinate. If the 
+     * property is downwards-predictive and already stored for the node, it is implied for all predecessors 
+     * and the backends are not updated.
+     * 
+     * @param id
+     * @param property
+     * @see #putProperty(long[], int, PredictiveProperty)
+     */
+    public void putPropertyToPredecessors(long id, PredictiveProperty property) {
+        this.putPropertyToNeighbours(id, property, false);
+    }
+
+    /**
+     * Stores the given property for all direct successors of the node with the given identifier.
+     * The node is decoded only once and neighbours are derived by modifying a single coordinate. If the 
+     * property is upwards-predictive and already stored for the node, it is implied for all successors 
+     * and the backends are not updated.
+     * 
+     * @param id
+     * @param property
+     * @see #putProperty(long[], int, PredictiveProperty)
+     */
+    public void putPropertyToSuccessors(long id, PredictiveProperty property) {
+        this.putPropertyToNeighbours(id, property, true);
+    }
+
+    /**
+     * Restores information from a checkpoint created with {@link #checkpoint(PredictiveProperty...)}. 
+     * The properties must be passed in the same order and must have the same directions as when the 
+     * checkpoint was created. Information is added in bulk, i.e. stored elements of predictive properties 
+     * are not checked against each other again. This method is meant to be called on an empty lattice
+     * which uses the same encoding of identifiers.
+     * @param checkpoint
+     * @param properties
+     */
+    public void restore(JHPLCheckpoint checkpoint, PredictiveProperty... properties) {
+        checkpoint.check(this.nodes.getHeights(), this.getEncoding(), properties);
+        if (this.nodes.getDictionary() != null) {
+            this.nodes.getDictionary().restore(checkpoint.getDictionary());
+        }
+        for (long id : checkpoint.getMaster()) {
+            this.nodes.checkNode(id);
+            this.putMaster(id);
+        }
+        for (int i = 0; i < properties.length; i++) {
+            int slot = checkProperty(properties[i]);
+            if (checkpoint.getUp(i) != null) {
+                for (long id : checkpoint.getUp(i)) {
+                    this.propertiesUp[slot].put(id);
+                }
+            }
+            if (checkpoint.getDown(i) != null) {
+                for (long id : checkpoint.getDown(i)) {
+                    this.propertiesDown[slot].put(id);
+                }
+            }
+            if (checkpoint.getNone(i) != null) {
+                for (long id : checkpoint.getNone(i)) {
+                    this.flags.set(id, this.propertiesNone[slot]);
+                    if (this.isEvictable(slot)) {
+                        this.frontier = Math.max(this.frontier, this.nodes.getLevel(id));
+                    }
+                }
+            }
+        }
+        this.setModified();
+    }
+
+    /**
+     * Sets a budget for the memory consumed by this lattice, as reported by {@link #getByteSize()}.
+     * When the budget is exceeded, information about evictable properties is removed, starting with 
+     * the nodes on the lowest levels. Information about nodes close to the highest level for which 
+     * an evictable property has been stored is never removed. The budget is therefore not a hard limit.
+     * After an eviction, the budget is not enforced again before the number of flagged nodes has grown 
+     * by half.
+     * @param bytes
+     * @see #setEvictable(PredictiveProperty)
+     */
+    public void setByteBudget(long bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Budget must be positive");
+        }
+        this.byteBudget = bytes;
+        this.evictionSize = 0;
+    }
+
+    /**
+     * Marks the given property as evictable. This means that the lattice may forget about this
+     * property for some nodes, when its byte budget is exceeded. Only non-predictive properties, 
+     * which typically represent information that can be re-derived, can be evicted.
+     * @param property
+     * @see #setByteBudget(long)
+     */
+    public void setEvictable(PredictiveProperty property) {
+        int slot = checkProperty(property);
+        if (property.getDirection() != Direction.NONE) {
+            throw new IllegalArgumentException("Only non-predictive properties can be evicted");
+        }
+        this.maskEvictable |= this.propertiesNone[slot];
+    }
+
+    /**
+     * Sets the backend used for predictive properties. Only affects properties that are
+     * registered with this lattice after this call.
+     * @param backend
+     */
+    public void setBackend(Backend backend) {
+        if (backend == null) {
+            throw new NullPointerException("Backend must not be null");
+        }
+        this.backend = backend;
+    }
+
     /**
      * Returns a class for mapping between spaces
      * @return
@@ -348,24 +910,43 @@ public class Lattice<T, U> {
     public String toString() {
         StringBuilder builder = new StringBuilder();
         builder.append("Lattice\n");
-        if (!propertiesUp.isEmpty()) {
+        if (!listProperties(propertiesUp).isEmpty()) {
             builder.append("├── Upwards-predictive properties\n");
             toString(builder, propertiesUp);
         }
-        if (!propertiesDown.isEmpty()) {
+        if (!listProperties(propertiesDown).isEmpty()) {
             builder.append("├── Downwards-predictive properties\n");
             toString(builder, propertiesDown);
         }
-        if (!propertiesNone.isEmpty()) {
+        if (numPropertiesNone != 0) {
             builder.append("├── Non-predictive properties\n");
-            toStringNone(builder, propertiesNone);
+            toStringNone(builder);
         }
         builder.append("├── Master\n");
         builder.append(master.toString("|   └── ", "|       "));
+        if (this.filter != null) {
+            builder.append("├── Filter\n");
+            builder.append("|   ├── Queries: ").append(this.filterQueries).append("\n");
+            builder.append("|   └── Saved probes: ").append(this.filterNegatives).append("\n");
+        }
         builder.append("└── Memory: ").append(getByteSize()).append(" [bytes]\n");
         return builder.toString();
     }
     
+    /**
+     * Enables or disables an approximate-membership filter in front of the master trie and the
+     * non-predictive properties. The filter answers lookups for nodes that have never been
+     * stored without probing these data structures. It grows with the number of nodes stored.
+     * @param enabled
+     */
+    public void setFilter(boolean enabled) {
+        if (!enabled) {
+            this.filter = null;
+        } else if (this.filter == null) {
+            this.buildFilter(Math.min(this.numNodes, INITIAL_FILTER_CAPACITY));
+        }
+    }
+
     /**
      * Allows for accessing methods that may not safe to be used on very large lattices
      * @return
@@ -376,37 +957,488 @@ public class Lattice<T, U> {
     
 
     /**
-     * Internal method that checks properties for validity
+     * Internal method that (re-)builds the filter from the master trie
+     * @param capacity
+     */
+    private void buildFilter(long capacity) {
+        this.filter = new JHPLFilter(capacity);
+        LongIterator iterator = this.iteratorLong(this.master);
+        for (long id = iterator.next(); id != -1; id = iterator.next()) {
+            this.filter.put(id);
+        }
+    }
+
+    /**
+     * Internal method that checks the byte budget and evicts information, if required
+     */
+    private void checkBudget() {
+        if (this.byteBudget != NO_BUDGET && ++this.budgetUpdates >= BUDGET_INTERVAL) {
+            this.budgetUpdates = 0;
+            if (this.flags.size() >= this.evictionSize && this.getByteSize() > this.byteBudget) {
+                this.evict();
+                
+                // Back off until the map has grown by half, as the budget may not be meetable
+                int size = this.flags.size();
+                this.evictionSize = size + Math.max(size / 2, BUDGET_INTERVAL);
+            }
+        }
+    }
+
+    /**
+     * Internal method that checks a batch of identifiers
+     * @param ids
+     * @param n
+     * @param result
+     */
+    private void checkNodes(long[] ids, int n, boolean[] result) {
+        if (n < 0 || n > ids.length || n > result.length) {
+            throw new IllegalArgumentException("Invalid number of identifiers");
+        }
+        for (int i = 0; i < n; i++) {
+            this.nodes.checkNode(ids[i]);
+        }
+    }
+
+    /**
+     * Internal method that checks properties for validity and returns their slot. Properties are 
+     * registered once per lattice.
      * @param property
+     * @return
      */
-    private void checkProperty(PredictiveProperty property) {
+    private int checkProperty(PredictiveProperty property) {
         
         if (property == null) {
             throw new NullPointerException("Property must not be null");
         }
         
-        if (property.getDirection() == Direction.UP) {
-            if (!this.propertiesUp.containsKey(property)) {
-                this.propertiesUp.put(property, new JHPLTrieLEQ(this));
+        // Fast path
+        if (property == this.lastProperty) {
+            return this.lastSlot;
+        }
+        
+        // Lookup or register
+        Integer slot = this.registry.get(property);
+        this.lastSlot = slot != null ? slot : registerProperty(property);
+        this.lastProperty = property;
+        return this.lastSlot;
+    }
+
+    /**
+     * Internal method that creates a backend for a predictive property
+     * @param upwards Whether the property is predictive for successors
+     * @return
+     */
+    private JHPLTrie createBackend(boolean upwards) {
+        switch (this.backend) {
+        case KD_TREE:
+            return new JHPLKDTree(this, upwards);
+        case ADAPTIVE:
+            return new JHPLTrieAdaptive(this, upwards);
+        case DAG:
+            return new JHPLDAG(this, upwards);
+        default:
+            return upwards ? new JHPLTrieLEQ(this) : new JHPLTrieGEQ(this);
+        }
+    }
+
+    /**
+     * Internal method that ensures the capacity of the buffers for batches
+     * @param n
+     */
+    private void ensureBatch(int n) {
+        if (this.batch.length < n) {
+            int length = Math.max(n, this.batch.length * 2);
+            this.batch = new boolean[length];
+            this.batchDown = new boolean[length];
+        }
+    }
+
+    /**
+     * Internal method that adds a batch of nodes to the given trie
+     * @param trie
+     * @param ids
+     * @param n
+     */
+    private void putProperty(JHPLTrie trie, long[] ids, int n) {
+        trie.contains(ids, n, this.batch);
+        for (int i = 0; i < n; i++) {
+            if (!this.batch[i]) {
+                trie.add(ids[i]);
             }
-        } else if (property.getDirection() == Direction.DOWN) {
-            if (!this.propertiesDown.containsKey(property)) {
-                this.propertiesDown.put(property, new JHPLTrieGEQ(this));
+        }
+    }
+
+    /**
+     * Internal method that stores several properties for a node, which has already been validated
+     * @param node The node, null if it has not been decoded yet
+     * @param id The identifier of the node
+     * @param properties
+     */
+    private void putProperties(int[] node, long id, PredictiveProperty[] properties) {
+
+        this.setModified();
+        
+        // Store in master trie
+        if (node != null) {
+            this.master.put(node);
+        } else {
+            this.master.put(id);
+        }
+        if (this.filter != null) {
+            this.putFilter(id);
+        }
+        
+        // Store and reduce the amount of information stored in the tries
+        long mask = 0L;
+        boolean evictable = false;
+        for (PredictiveProperty property : properties) {
+            if (property == null) {
+                continue;
             }
-        } else if (property.getDirection() == Direction.BOTH) {
-            if (!this.propertiesUp.containsKey(property)) {
-                this.propertiesUp.put(property, new JHPLTrieLEQ(this));
+            int slot = this.checkProperty(property);
+            Direction direction = property.getDirection();
+            if (direction == Direction.NONE) {
+                mask |= this.propertiesNone[slot];
+                evictable |= this.isEvictable(slot);
+                continue;
             }
-            if (!this.propertiesDown.containsKey(property)) {
-                this.propertiesDown.put(property, new JHPLTrieGEQ(this));
+            if (node == null) {
+                node = this.space().toIndex(this.element, id);
             }
-        } else {
-            if (!this.propertiesNone.containsKey(property)) {
-                this.propertiesNone.put(property, new JHPLMap<Boolean>());
+            switch (direction) {
+            case UP:
+                this.propertiesUp[slot].add(node);
+                break;
+            case DOWN:
+                this.propertiesDown[slot].add(node);
+                break;
+            default:
+                if (!this.propertiesUp[slot].contains(node) && !this.propertiesDown[slot].contains(node)) {
+                    this.propertiesUp[slot].add(node); 
+                    this.propertiesDown[slot].add(node);
+                }
+            }
+        }
+        
+        // Store all non-predictive properties at once
+        if (mask != 0L) {
+            this.flags.set(id, mask);
+            if (evictable) {
+                this.frontier = Math.max(this.frontier, this.nodes.getLevel(id));
             }
         }
+        this.checkBudget();
+    }
+
+    /**
+     * Internal method that stores a property for all direct successors or predecessors of a node
+     * @param id
+     * @param property
+     * @param successors
+     */
+    private void putPropertyToNeighbours(long id, PredictiveProperty property, boolean successors) {
+
+        this.nodes.checkNode(id);
+        int slot = this.checkProperty(property);
+        this.setModified();
+        
+        // Prepare
+        int[] node = this.space().toIndex(this.element, id);
+        int[] heights = this.nodes.getHeights();
+        long[] multiplier = this.nodes.getMultiplier();
+        JHPLDictionary dictionary = this.nodes.getDictionary();
+        int delta = successors ? 1 : -1;
+        Direction direction = property.getDirection();
+        JHPLTrie up = this.propertiesUp[slot];
+        JHPLTrie down = this.propertiesDown[slot];
+        
+        // Check whether the property is implied for all neighbours
+        boolean implied = false;
+        if (successors && direction == Direction.UP) {
+            implied = up.contains(node);
+        } else if (!successors && direction == Direction.DOWN) {
+            implied = down.contains(node);
+        }
+        long mask = this.propertiesNone[slot];
+        boolean evictable = direction == Direction.NONE && this.isEvictable(slot);
+        int level = evictable ? this.nodes.getLevel(node) + delta : 0;
+
+        // For each neighbour
+        for (int dimension = 0; dimension < node.length; dimension++) {
+            int value = node[dimension];
+            if (successors ? value == heights[dimension] - 1 : value == 0) {
+                continue;
+            }
+            long neighbour;
+            if (dictionary != null) {
+                neighbour = dictionary.getNeighbour(id, dimension, delta);
+            } else {
+                neighbour = successors ? id + multiplier[dimension] : id - multiplier[dimension];
+            }
+            node[dimension] = value + delta;
+            
+            // Store in master trie
+            this.master.put(node);
+            if (this.filter != null) {
+                this.putFilter(neighbour);
+            }
+            
+            // Store property
+            if (!implied) {
+                switch (direction) {
+                case UP:
+                    up.add(node);
+                    break;
+                case DOWN:
+                    down.add(node);
+                    break;
+                case BOTH:
+                    if (!up.contains(node) && !down.contains(node)) {
+                        up.add(node); 
+                        down.add(node);
+                    }
+                    break;
+                default:
+                    this.flags.set(neighbour, mask);
+                    if (evictable) {
+                        this.frontier = Math.max(this.frontier, level);
+                    }
+                }
+            }
+            node[dimension] = value;
+        }
+        this.checkBudget();
+    }
+
+    /**
+     * Internal method that evicts information about evictable properties, level by level, 
+     * starting with the nodes farthest below the frontier
+     */
+    private void evict() {
+
+        // Check
+        int limit = this.frontier - EVICTION_DISTANCE;
+        if (limit < 0) {
+            return;
+        }
+
+        // Determine the number of levels to evict
+        int[] removable = this.flags.getRemovable(this.maskEvictable, this.nodes, limit);
+        long available = this.byteBudget - (this.getByteSize() - this.flags.getByteSize());
+        int remaining = this.flags.size();
+        int level = -1;
+        while (level < limit && this.flags.getByteSize(remaining) > available) {
+            level++;
+            remaining -= removable[level];
+        }
+
+        // Evict
+        if (level >= 0) {
+            this.flags.clear(this.maskEvictable, this.nodes, level);
+            this.flags.compact();
+        }
+    }
+
+    /**
+     * Internal method that checks the filter, if any
+     * @param id
+     * @return False if the node with the given identifier is not stored in this lattice, true if it may be
+     */
+    private boolean mayContain(long id) {
+        if (this.filter == null) {
+            return true;
+        }
+        this.filterQueries++;
+        if (this.filter.mayContain(id)) {
+            return true;
+        }
+        this.filterNegatives++;
+        return false;
+    }
+
+    /**
+     * Internal method that returns the identifiers of all nodes with the non-predictive property 
+     * represented by the given mask
+     * @param mask
+     * @return
+     */
+    private long[] toArray(long mask) {
+        int size = 0;
+        for (int i = 0; i < this.flags.keys.length; i++) {
+            if (this.flags.states[i] == JHPLFlags.ASSIGNED && (this.flags.values[i] & mask) != 0L) {
+                size++;
+            }
+        }
+        long[] result = new long[size];
+        size = 0;
+        for (int i = 0; i < this.flags.keys.length; i++) {
+            if (this.flags.states[i] == JHPLFlags.ASSIGNED && (this.flags.values[i] & mask) != 0L) {
+                result[size++] = this.flags.keys[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Internal method that returns an iterator over the identifiers of all elements in the given trie
+     * @param trie
+     * @return
+     */
+    private LongIterator iteratorLong(JHPLTrie trie) {
+        if (this.nodes.getDictionary() == null) {
+            return trie.iteratorLong(this.nodes.getMultiplier());
+        }
+        return toIdentifiers(trie.iterator());
+    }
+
+    /**
+     * Internal method that returns an iterator over the identifiers of the given nodes. Note: hasNext() 
+     * is not implemented. Simply iterate until <code>-1</code> is returned.
+     * @param iterator An iterator which returns <code>null</code> after the last node
+     * @return
+     */
+    private LongIterator toIdentifiers(final Iterator<int[]> iterator) {
+        return new LongIterator() {
+            
+            @Override public boolean hasNext() { throw new UnsupportedOperationException(); }
+
+            @Override
+            public long next() {
+                int[] element = iterator.next();
+                return element == null ? -1 : space.toId(element);
+            }
+        };
+    }
+
+    /**
+     * Internal method that returns all identifiers returned by the given iterator
+     * @param iterator
+     * @return
+     */
+    private long[] toArray(LongIterator iterator) {
+        long[] result = new long[16];
+        int size = 0;
+        for (long id = iterator.next(); id != -1; id = iterator.next()) {
+            if (size == result.length) {
+                result = Arrays.copyOf(result, size * 2);
+            }
+            result[size++] = id;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * Internal method that stores a node in the master trie
+     * @param node
+     */
+    private void putMaster(int[] node) {
+        this.master.put(node);
+        if (this.filter != null) {
+            this.putFilter(space().toId(node));
+        }
+    }
+
+    /**
+     * Internal method that stores a node in the master trie
+     * @param id
+     */
+    private void putMaster(long id) {
+        this.master.put(id);
+        if (this.filter != null) {
+            this.putFilter(id);
+        }
+    }
+
+    /**
+     * Internal method that stores a node in the filter, which is rebuilt if it is saturated
+     * @param id
+     */
+    private void putFilter(long id) {
+        this.filter.put(id);
+        if (this.filter.isSaturated() && this.filter.getCapacity() < this.numNodes) {
+            this.buildFilter(this.filter.getCapacity() * 2L);
+        }
+    }
+
+    /**
+     * Internal method that returns whether the non-predictive property in the given slot is evictable
+     * @param slot
+     * @return
+     */
+    private boolean isEvictable(int slot) {
+        return (this.propertiesNone[slot] & this.maskEvictable) != 0L;
+    }
+
+    /**
+     * Internal method that registers a new property
+     * @param property
+     * @return
+     */
+    private int registerProperty(PredictiveProperty property) {
+        
+        // Ensure capacity
+        int slot = this.numProperties;
+        if (slot == this.properties.length) {
+            int capacity = this.properties.length * 2;
+            this.properties = Arrays.copyOf(this.properties, capacity);
+            this.propertiesUp = Arrays.copyOf(this.propertiesUp, capacity);
+            this.propertiesDown = Arrays.copyOf(this.propertiesDown, capacity);
+            this.propertiesNone = Arrays.copyOf(this.propertiesNone, capacity);
+            this.tries = Arrays.copyOf(this.tries, capacity * 2);
+        }
+        
+        // Create backends
+        switch (property.getDirection()) {
+        case UP:
+            this.propertiesUp[slot] = registerTrie(createBackend(true));
+            break;
+        case DOWN:
+            this.propertiesDown[slot] = registerTrie(createBackend(false));
+            break;
+        case BOTH:
+            this.propertiesUp[slot] = registerTrie(createBackend(true));
+            this.propertiesDown[slot] = registerTrie(createBackend(false));
+            break;
+        default:
+            if (this.numPropertiesNone == JHPLFlags.MAX_FLAGS) {
+                throw new IllegalStateException("Lattice must not have more than " + JHPLFlags.MAX_FLAGS + " non-predictive properties");
+            }
+            this.propertiesNone[slot] = 1L << this.numPropertiesNone++;
+            this.maskNone |= this.propertiesNone[slot];
+        }
+        
+        // Register
+        this.properties[slot] = property;
+        this.numProperties++;
+        this.registry.put(property, slot);
+        return slot;
     }
     
+    /**
+     * Internal method that registers a trie
+     * @param trie
+     * @return
+     */
+    private JHPLTrie registerTrie(JHPLTrie trie) {
+        this.tries[this.numTries++] = trie;
+        return trie;
+    }
+
+    /**
+     * Returns all properties for which the given array contains a trie
+     * @param backends
+     * @return
+     */
+    private List<PredictiveProperty> listProperties(JHPLTrie[] backends) {
+        List<PredictiveProperty> list = new ArrayList<PredictiveProperty>();
+        for (int i = 0; i < this.numProperties; i++) {
+            if (backends[i] != null) {
+                list.add(this.properties[i]);
+            }
+        }
+        return list;
+    }
+
     /**
      * Enumerates all nodes on the given level regardless of whether or not they are stored in the lattice. Note: hasNext() is
      * not implemented. Simply iterate until <code>null</code> is returned.
@@ -674,65 +1706,40 @@ public class Lattice<T, U> {
         }
     }
 
-    /**
-     * Clears the given property for the given node. If the property is predictive in an upwards direction, it 
-     * will also be cleared for all successors of the given node. If the property is predictive in a downwards direction,
-     * it will also be cleared for all predecessors of the given node.<br>
-     * <br>
-     * The worst-case run-time complexity of this operation is O(#nodes for which put has been called with this property).
-     * Depending on your access pattern (e.g. sequential in terms of a path from bottom to top), it may be reduced up to 
-     * a complexity of amortized O(1). 
-     * 
-     * @param node
-     * @param property
-     */
-    private void removeProperty(int[] node, PredictiveProperty property) {
-
-        this.setModified();
-        if (property.getDirection() == Direction.UP) {
-            this.propertiesUp.get(property).clear(node);
-        } else if (property.getDirection() == Direction.DOWN) {
-            this.propertiesDown.get(property).clear(node);
-        } else if (property.getDirection() == Direction.BOTH) {
-            this.propertiesUp.get(property).clear(node);
-            this.propertiesDown.get(property).clear(node);
-        } else {
-            this.propertiesNone.get(property).put(space().toId(node), null);
-        }
-    }
-
     /**
      * To string
      * @param builder
      * @param properties
      */
-    private void toString(StringBuilder builder , Map<PredictiveProperty, JHPLTrie> properties) {
-        List<PredictiveProperty> list = new ArrayList<PredictiveProperty>();
-        list.addAll(properties.keySet());
+    private void toString(StringBuilder builder , JHPLTrie[] backends) {
+        List<Integer> list = new ArrayList<Integer>();
+        for (int slot = 0; slot < this.numProperties; slot++) {
+            if (backends[slot] != null) {
+                list.add(slot);
+            }
+        }
         for (int i=0; i<list.size()-1; i++) {
-            PredictiveProperty property = list.get(i);
-            builder.append("|   ├── ").append(property.getLabel()).append("\n");
-            builder.append(properties.get(property).toString("|   |   └── ", "|   |       "));
+            int slot = list.get(i);
+            builder.append("|   ├── ").append(properties[slot].getLabel()).append("\n");
+            builder.append(backends[slot].toString("|   |   └── ", "|   |       "));
         }
         if (!list.isEmpty()) {
-            PredictiveProperty property = list.get(list.size()-1);
-            builder.append("|   └── ").append(property.getLabel()).append("\n");
-            builder.append(properties.get(property).toString("|       └── ", "|           "));
+            int slot = list.get(list.size()-1);
+            builder.append("|   └── ").append(properties[slot].getLabel()).append("\n");
+            builder.append(backends[slot].toString("|       └── ", "|           "));
         }
     }
     
     /**
      * To string
      * @param builder
-     * @param properties
      */
-    private void toStringNone(StringBuilder builder , Map<PredictiveProperty, JHPLMap<Boolean>> properties) {
-        List<PredictiveProperty> list = new ArrayList<PredictiveProperty>();
-        list.addAll(properties.keySet());
-        for (int i=0; i<list.size()-1; i++) {
-            PredictiveProperty property = list.get(i);
-            builder.append("|   ├── ").append(property.getLabel()).append("\n");
-            builder.append("|   |   └── Not implemented");
+    private void toStringNone(StringBuilder builder) {
+        for (int slot = 0; slot < this.numProperties; slot++) {
+            if (propertiesNone[slot] != 0L) {
+                builder.append("|   ├── ").append(properties[slot].getLabel()).append("\n");
+                builder.append("|   |   └── Flag: ").append(Long.numberOfTrailingZeros(propertiesNone[slot])).append("\n");
+            }
         }
     }
 
@@ -764,6 +1771,9 @@ public class Lattice<T, U> {
      * @return
      */
     LongIterator listAllNodesAsIdentifiers() {
+        if (nodes.getDictionary() != null) {
+            return new WrappedPrimitiveLongIterator(null, this.toIdentifiers(this.listAllNodesImpl()));
+        }
         return new WrappedPrimitiveLongIterator(null, this.listAllNodesAsIdentifiersImpl(nodes.getMultiplier()));
     }
 
@@ -772,6 +1782,9 @@ public class Lattice<T, U> {
      * @return
      */
     LongIterator listAllNodesAsIdentifiers(int level) {
+        if (nodes.getDictionary() != null) {
+            return new WrappedPrimitiveLongIterator(null, this.toIdentifiers(this.listAllNodesImpl(level)));
+        }
         return new WrappedPrimitiveLongIterator(null, this.listAllNodesAsIdentifiersImpl(level, nodes.getMultiplier()));
     }
 
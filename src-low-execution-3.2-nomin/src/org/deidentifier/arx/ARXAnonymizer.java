@@ -17,6 +17,7 @@
 
 package org.deidentifier.arx;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -32,14 +33,24 @@ import org.deidentifier.arx.algorithm.LIGHTNINGAlgorithm;
 import org.deidentifier.arx.criteria.KAnonymity;
 import org.deidentifier.arx.criteria.LDiversity;
 import org.deidentifier.arx.criteria.TCloseness;
+import org.deidentifier.arx.framework.check.AdaptiveHistoryPolicy;
+import org.deidentifier.arx.framework.check.CheckResultCache;
 import org.deidentifier.arx.framework.check.NodeChecker;
+import org.deidentifier.arx.framework.check.NodeCheckerStatistics;
 import org.deidentifier.arx.framework.check.distribution.DistributionAggregateFunction;
 import org.deidentifier.arx.framework.check.distribution.DistributionAggregateFunction.DistributionAggregateFunctionGeneralization;
 import org.deidentifier.arx.framework.data.DataManager;
 import org.deidentifier.arx.framework.data.Dictionary;
 import org.deidentifier.arx.framework.data.GeneralizationHierarchy;
+import org.deidentifier.arx.framework.lattice.CheckpointWriter;
+import org.deidentifier.arx.framework.lattice.InformationLossStore;
 import org.deidentifier.arx.framework.lattice.SolutionSpace;
 import org.deidentifier.arx.metric.Metric;
+import org.deidentifier.arx.metric.v2.InformationLossCodecs;
+
+import de.linearbits.jhpl.Lattice.Backend;
+import de.linearbits.jhpl.Lattice.Encoding;
+import de.linearbits.jhpl.Lattice.Memory;
 
 /**
  * This class offers several methods to define parameters and execute the ARX
@@ -145,6 +156,39 @@ public class ARXAnonymizer {
     /** The maximal number of QIs that can be processed. */
     private int         maxQuasiIdentifiers  = Integer.MAX_VALUE;
 
+    /** The data structure used for representing predictive properties. */
+    private Backend     propertyBackend      = Backend.TRIE;
+
+    /** The memory used for backing the solution space. */
+    private Memory      solutionSpaceMemory  = Memory.HEAP;
+
+    /** Whether to filter lookups of transformations in the solution space. */
+    private boolean     solutionSpaceFilter  = false;
+
+    /** The memory budget of the solution space in bytes. */
+    private long        solutionSpaceBudget  = Long.MAX_VALUE;
+
+    /** Whether the solution space reverses the order of dimensions. */
+    private boolean     solutionSpaceReversed = true;
+
+    /** The encoding of transformations as identifiers. */
+    private Encoding    solutionSpaceEncoding = Encoding.DENSE;
+
+    /** Whether the solution space stores information loss in primitive columns. */
+    private boolean     solutionSpacePrimitiveLosses = false;
+
+    /** The file to which the solution space is checkpointed, if any. */
+    private File        solutionSpaceCheckpoint = null;
+
+    /** The interval between two checkpoints in milliseconds. */
+    private long        solutionSpaceCheckpointInterval = 0L;
+
+    /** The memory budget for adaptive sizing of the history in bytes, 0 if disabled. */
+    private long        historyBudget = 0L;
+
+    /** The cache for results of checks across runs, if any. */
+    private CheckResultCache checkResultCache = null;
+
 
     /**
      * Creates a new anonymizer with the default configuration.
@@ -236,6 +280,86 @@ public class ARXAnonymizer {
         return maxQuasiIdentifiers;
     }
 
+    /**
+     * Returns the data structure used for representing predictive properties.
+     * @return
+     */
+    public Backend getPropertyBackend() {
+        return propertyBackend;
+    }
+
+    /**
+     * Returns the memory budget of the solution space in bytes.
+     * @return
+     */
+    public long getSolutionSpaceBudget() {
+        return solutionSpaceBudget;
+    }
+
+    /**
+     * Returns the file to which the solution space is checkpointed, if any.
+     * @return
+     */
+    public File getSolutionSpaceCheckpoint() {
+        return solutionSpaceCheckpoint;
+    }
+
+    /**
+     * Returns the encoding of transformations as identifiers.
+     * @return
+     */
+    public Encoding getSolutionSpaceEncoding() {
+        return solutionSpaceEncoding;
+    }
+
+    /**
+     * Returns the memory used for backing the solution space.
+     * @return
+     */
+    public Memory getSolutionSpaceMemory() {
+        return solutionSpaceMemory;
+    }
+
+    /**
+     * Returns whether lookups of transformations in the solution space are filtered.
+     * @return
+     */
+    public boolean isSolutionSpaceFilter() {
+        return solutionSpaceFilter;
+    }
+
+    /**
+     * Returns whether the solution space reverses the order of dimensions.
+     * @return
+     */
+    public boolean isSolutionSpaceReversed() {
+        return solutionSpaceReversed;
+    }
+
+    /**
+     * Sets a cache for the results of checks, which are then reused across runs on identical
+     * data with an identical configuration. Passing <code>null</code> disables caching, which
+     * is the default.
+     * 
+     * @param cache
+     */
+    public void setCheckResultCache(final CheckResultCache cache) {
+        this.checkResultCache = cache;
+    }
+
+    /**
+     * Enables adaptive sizing of the history within the given memory budget. The size of snapshots
+     * and the number of snapshots are then adapted to how often snapshots are actually reused.
+     * The maximal snapshot sizes configured remain upper bounds. Passing 0 disables adaptive
+     * sizing, which is the default.
+     * 
+     * @param bytes
+     */
+    public void setHistoryBudget(final long bytes) {
+        if (bytes < 0) { throw new IllegalArgumentException("Budget must not be negative"); }
+        this.historyBudget = bytes;
+    }
+
     /**
      * Sets the maximum number of snapshots allowed to store in the history.
      * 
@@ -247,6 +371,102 @@ public class ARXAnonymizer {
         this.historySize = historySize;
     }
 
+    /**
+     * Sets the data structure used for representing predictive properties.
+     * 
+     * @param backend
+     */
+    public void setPropertyBackend(final Backend backend) {
+        if (backend == null) { throw new NullPointerException("Backend must not be null"); }
+        this.propertyBackend = backend;
+    }
+
+    /**
+     * Sets the memory used for backing the solution space. Off-heap memory allows
+     * searching solution spaces which are larger than the Java heap.
+     * 
+     * @param memory
+     */
+    public void setSolutionSpaceMemory(final Memory memory) {
+        if (memory == null) { throw new NullPointerException("Memory must not be null"); }
+        this.solutionSpaceMemory = memory;
+    }
+
+    /**
+     * Sets the memory budget of the solution space in bytes. Information that can be
+     * re-derived is evicted when the budget is exceeded.
+     * 
+     * @param bytes
+     */
+    public void setSolutionSpaceBudget(final long bytes) {
+        if (bytes <= 0) { throw new IllegalArgumentException("Budget must be positive"); }
+        this.solutionSpaceBudget = bytes;
+    }
+
+    /**
+     * Sets the encoding of transformations as identifiers. Bit-packed identifiers are decoded
+     * with shifts and masks instead of divisions. If they do not fit into 62 bits, dense
+     * identifiers are used instead. Sparse identifiers are assigned on demand and support solution 
+     * spaces with more than Long.MAX_VALUE transformations. They provide no multipliers, which are 
+     * required by the node checker, and can therefore not be used for anonymization yet.
+     * 
+     * @param encoding
+     */
+    public void setSolutionSpaceEncoding(final Encoding encoding) {
+        if (encoding == null) { throw new NullPointerException("Encoding must not be null"); }
+        if (encoding == Encoding.SPARSE) { throw new IllegalArgumentException("Sparse identifiers are not supported by the node checker"); }
+        this.solutionSpaceEncoding = encoding;
+    }
+
+    /**
+     * Checkpoints the solution space to the given file in the background, at most once per
+     * interval. Checkpoints include the best transformation found so far and a fingerprint of the
+     * data and configuration. They can be restored through the API of the solution space, e.g. to
+     * inspect the progress of an aborted search. The anonymizer itself does not resume 
+     * from them, as the search algorithms do not continue from restored transformations. Set the 
+     * file to null to disable checkpointing.
+     * 
+     * @param file
+     * @param interval The interval in milliseconds
+     */
+    public void setSolutionSpaceCheckpoint(final File file, final long interval) {
+        if (interval < 0) { throw new IllegalArgumentException("Interval must not be negative"); }
+        this.solutionSpaceCheckpoint = file;
+        this.solutionSpaceCheckpointInterval = interval;
+    }
+
+    /**
+     * Enables an approximate-membership filter for lookups of transformations in
+     * the solution space, which answers lookups for unseen transformations cheaply.
+     * 
+     * @param filter
+     */
+    public void setSolutionSpaceFilter(final boolean filter) {
+        this.solutionSpaceFilter = filter;
+    }
+
+    /**
+     * Sets whether the solution space stores information loss and lower bounds in primitive columns
+     * instead of objects. This is supported for single-dimensional metrics and for multi-dimensional
+     * metrics aggregated with the geometric mean. Information loss of other metrics is always stored 
+     * as objects. Each access to the information loss of a transformation then decodes a new object.
+     * 
+     * @param primitive
+     */
+    public void setSolutionSpacePrimitiveLosses(final boolean primitive) {
+        this.solutionSpacePrimitiveLosses = primitive;
+    }
+
+    /**
+     * Sets whether the solution space reverses the order of dimensions. If not, transformations
+     * are converted between ARX and the solution space without copying arrays.
+     * 
+     * @param reversed
+     */
+    public void setSolutionSpaceReversed(final boolean reversed) {
+        this.solutionSpaceReversed = reversed;
+    }
+
     /**
      * Sets a listener.
      * 
@@ -316,9 +536,25 @@ public class ARXAnonymizer {
         checkAfterEncoding(config, manager);
 
         final long time = System.currentTimeMillis();
+
+        // Identify data and configuration
+        String fingerprint = null;
+        if (checkResultCache != null || solutionSpaceCheckpoint != null) {
+            fingerprint = CheckResultCache.getFingerprint(manager, config);
+        }
         
         // Build or clean the lattice
-        SolutionSpace solutionSpace = new SolutionSpace(manager.getHierarchiesMinLevels(), manager.getHierarchiesMaxLevels());
+        SolutionSpace solutionSpace = new SolutionSpace(manager.getHierarchiesMinLevels(), manager.getHierarchiesMaxLevels(), solutionSpaceMemory, solutionSpaceReversed, solutionSpaceEncoding);
+        solutionSpace.setPropertyBackend(propertyBackend);
+        solutionSpace.setLookupFilter(solutionSpaceFilter);
+        if (solutionSpaceBudget != Long.MAX_VALUE) {
+            solutionSpace.setByteBudget(solutionSpaceBudget);
+        }
+        CheckpointWriter writer = null;
+        if (solutionSpaceCheckpoint != null) {
+            writer = new CheckpointWriter(solutionSpaceCheckpoint, solutionSpaceCheckpointInterval, fingerprint);
+            solutionSpace.setCheckpointWriter(writer);
+        }
 
         // Build a node checker
         final NodeChecker checker = new NodeChecker(manager,
@@ -328,9 +564,25 @@ public class ARXAnonymizer {
                                                     snapshotSizeDataset,
                                                     snapshotSizeSnapshot,
                                                     solutionSpace);
+        AdaptiveHistoryPolicy historyPolicy = null;
+        if (historyBudget != 0L) {
+            historyPolicy = checker.createAdaptiveHistoryPolicy(historyBudget);
+            checker.setHistoryPolicy(historyPolicy);
+        }
 
         // Initialize the metric
         config.getMetric().initialize(manager, definition, manager.getDataGeneralized(), manager.getHierarchies(), config);
+        if (solutionSpacePrimitiveLosses) {
+            InformationLossStore.Codec codec = InformationLossCodecs.create(config.getMetric());
+            if (codec != null) {
+                solutionSpace.setInformationLossCodec(codec);
+            }
+        }
+
+        // Attach results known from previous runs
+        if (checkResultCache != null) {
+            checkResultCache.seed(fingerprint, solutionSpace);
+        }
 
         // Create an algorithm instance
         AbstractAlgorithm algorithm = getAlgorithm(config,
@@ -344,6 +596,15 @@ public class ARXAnonymizer {
 
         algorithm.traverse();
         this.time = System.currentTimeMillis() - time;
+        this.statistics = checker.getStatistics();
+        this.historyPolicy = historyPolicy;
+        if (checkResultCache != null) {
+            checkResultCache.store(fingerprint, solutionSpace);
+        }
+        if (writer != null) {
+            solutionSpace.setCheckpointWriter(null);
+            writer.close();
+        }
         
         // Deactivate history to prevent bugs when sorting data
         checker.getHistory().reset();
@@ -553,7 +814,27 @@ public class ARXAnonymizer {
     
     private long time;
     
+    private NodeCheckerStatistics statistics;
+    
+    private AdaptiveHistoryPolicy historyPolicy;
+    
     public long getTime(){
         return time;
     }
+    
+    /**
+     * Returns the policy which adapted the history during the last call to anonymize(), if any
+     * @return
+     */
+    public AdaptiveHistoryPolicy getHistoryPolicy(){
+        return historyPolicy;
+    }
+    
+    /**
+     * Returns statistics about the checks performed during the last call to anonymize()
+     * @return
+     */
+    public NodeCheckerStatistics getStatistics(){
+        return statistics;
+    }
 }
@@ -26,8 +26,12 @@ import org.deidentifier.arx.Data;
 import org.deidentifier.arx.benchmark.BenchmarkSetup.BenchmarkDataset;
 import org.deidentifier.arx.benchmark.BenchmarkSetup.BenchmarkPrivacyModel;
 import org.deidentifier.arx.benchmark.BenchmarkSetup.BenchmarkUtilityMeasure;
-import org.deidentifier.arx.framework.check.NodeChecker;
+import org.deidentifier.arx.framework.check.AdaptiveHistoryPolicy;
+import org.deidentifier.arx.framework.check.LatencyHistogram;
+import org.deidentifier.arx.framework.check.NodeCheckerStatistics;
 
+import de.linearbits.jhpl.Lattice.Backend;
+import de.linearbits.jhpl.Lattice.Memory;
 import de.linearbits.subframe.Benchmark;
 import de.linearbits.subframe.analyzer.ValueBuffer;
 
@@ -53,6 +57,63 @@ public class BenchmarkExperiment {
     /** TIME */
     public static final int        TIME_CHECK        = BENCHMARK.addMeasure("TimeCheck");
 
+    /** Number of checks */
+    public static final int        CHECKS              = BENCHMARK.addMeasure("Checks");
+
+    /** Number of checks answered from the solution space */
+    public static final int        CHECKS_CACHED       = BENCHMARK.addMeasure("ChecksCached");
+
+    /** Number of checks by transition type */
+    public static final int        CHECKS_UNOPTIMIZED  = BENCHMARK.addMeasure("ChecksUnoptimized");
+
+    /** Number of checks by transition type */
+    public static final int        CHECKS_ROLLUP       = BENCHMARK.addMeasure("ChecksRollup");
+
+    /** Number of checks by transition type */
+    public static final int        CHECKS_SNAPSHOT     = BENCHMARK.addMeasure("ChecksSnapshot");
+
+    /** Mean time per check in ns */
+    public static final int        TIME_CHECK_MEAN     = BENCHMARK.addMeasure("TimeCheckMeanNs");
+
+    /** Median time per check in ns */
+    public static final int        TIME_CHECK_P50      = BENCHMARK.addMeasure("TimeCheckP50Ns");
+
+    /** 99th percentile of time per check in ns */
+    public static final int        TIME_CHECK_P99      = BENCHMARK.addMeasure("TimeCheckP99Ns");
+
+    /** Mean time per check by transition type in ns */
+    public static final int        TIME_CHECK_UNOPTIMIZED = BENCHMARK.addMeasure("TimeCheckUnoptimizedNs");
+
+    /** Mean time per check by transition type in ns */
+    public static final int        TIME_CHECK_ROLLUP   = BENCHMARK.addMeasure("TimeCheckRollupNs");
+
+    /** Mean time per check by transition type in ns */
+    public static final int        TIME_CHECK_SNAPSHOT = BENCHMARK.addMeasure("TimeCheckSnapshotNs");
+
+    /** Time spent storing snapshots in ms */
+    public static final int        TIME_HISTORY_STORE  = BENCHMARK.addMeasure("TimeHistoryStore");
+
+    /** Time spent computing information loss in ms */
+    public static final int        TIME_METRIC         = BENCHMARK.addMeasure("TimeMetric");
+
+    /** Final capacity of the history */
+    public static final int        HISTORY_CAPACITY    = BENCHMARK.addMeasure("HistoryCapacity");
+
+    /** Number of decisions of the adaptive history policy */
+    public static final int        HISTORY_DECISIONS   = BENCHMARK.addMeasure("HistoryDecisions");
+
+    /** The data structure used for representing predictive properties */
+    private static Backend         BACKEND     = Backend.TRIE;
+
+    /** The memory used for backing the solution space */
+    private static Memory          MEMORY      = Memory.HEAP;
+
+    /** The memory budget for adaptive sizing of the history, 0 for static sizing */
+    private static long            HISTORY_BUDGET = 0L;
+
+    /** Whether the solution space stores information loss in primitive columns */
+    private static boolean         PRIMITIVE_LOSSES = false;
+
     /**
      * Returns all criteria relevant for this benchmark
      * @return
@@ -63,18 +124,63 @@ public class BenchmarkExperiment {
         };
     }
     
+    /**
+     * Returns the file to which results are written. Results for backends other
+     * than the default one are written to separate files.
+     * @return
+     */
+    private static File getResultsFile() {
+        String suffix = BACKEND == Backend.TRIE ? "" : "-" + BACKEND.name().toLowerCase().replace('_', '-');
+        suffix += MEMORY == Memory.HEAP ? "" : "-" + MEMORY.name().toLowerCase();
+        suffix += HISTORY_BUDGET == 0L ? "" : "-adaptive-history";
+        suffix += PRIMITIVE_LOSSES ? "-primitive-losses" : "";
+        return new File("results/results-low-execution-3.2-nomin" + suffix + ".csv");
+    }
+    
     /**
      * Main entry point
      * 
-     * @param args
+     * @param args Optional: the backend for predictive properties (TRIE, KD_TREE, ADAPTIVE or DAG),
+     *             the memory for the solution space (HEAP, DIRECT or MAPPED), the memory budget
+     *             in bytes for adaptive sizing of the history and whether to store information loss
+     *             in primitive columns (true or false)
      * @throws IOException
      */
     public static void main(String[] args) throws IOException {
 
+        // Backend and memory
+        if (args.length > 0) {
+            BACKEND = Backend.valueOf(args[0].toUpperCase());
+        }
+        if (args.length > 1) {
+            MEMORY = Memory.valueOf(args[1].toUpperCase());
+        }
+        if (args.length > 2) {
+            HISTORY_BUDGET = Long.parseLong(args[2]);
+        }
+        if (args.length > 3) {
+            PRIMITIVE_LOSSES = Boolean.parseBoolean(args[3]);
+        }
+
         // Init
         BENCHMARK.addAnalyzer(TIME_OPTIMAL, new ValueBuffer());
         BENCHMARK.addAnalyzer(TIME_HEURISTIC, new ValueBuffer());
         BENCHMARK.addAnalyzer(TIME_CHECK, new ValueBuffer());
+        BENCHMARK.addAnalyzer(CHECKS, new ValueBuffer());
+        BENCHMARK.addAnalyzer(CHECKS_CACHED, new ValueBuffer());
+        BENCHMARK.addAnalyzer(CHECKS_UNOPTIMIZED, new ValueBuffer());
+        BENCHMARK.addAnalyzer(CHECKS_ROLLUP, new ValueBuffer());
+        BENCHMARK.addAnalyzer(CHECKS_SNAPSHOT, new ValueBuffer());
+        BENCHMARK.addAnalyzer(TIME_CHECK_MEAN, new ValueBuffer());
+        BENCHMARK.addAnalyzer(TIME_CHECK_P50, new ValueBuffer());
+        BENCHMARK.addAnalyzer(TIME_CHECK_P99, new ValueBuffer());
+        BENCHMARK.addAnalyzer(TIME_CHECK_UNOPTIMIZED, new ValueBuffer());
+        BENCHMARK.addAnalyzer(TIME_CHECK_ROLLUP, new ValueBuffer());
+        BENCHMARK.addAnalyzer(TIME_CHECK_SNAPSHOT, new ValueBuffer());
+        BENCHMARK.addAnalyzer(TIME_HISTORY_STORE, new ValueBuffer());
+        BENCHMARK.addAnalyzer(TIME_METRIC, new ValueBuffer());
+        BENCHMARK.addAnalyzer(HISTORY_CAPACITY, new ValueBuffer());
+        BENCHMARK.addAnalyzer(HISTORY_DECISIONS, new ValueBuffer());
         
         // Repeat for each data set
         for (BenchmarkDataset data : BenchmarkSetup.getDatasets()) {
@@ -83,7 +189,7 @@ public class BenchmarkExperiment {
                     System.out.println(data.toString() + measure.toString() + criterion.toString());
                     BENCHMARK.addRun(data.toString(), measure.toString(), criterion.toString());
                     anonymize(BenchmarkSetup.getData(data, criterion), measure, criterion);
-                    BENCHMARK.getResults().write(new File("results/results-low-execution-3.2-nomin.csv"));
+                    BENCHMARK.getResults().write(getResultsFile());
                 }
             }
         }
@@ -95,7 +201,7 @@ public class BenchmarkExperiment {
                     System.out.println("SACS" + measure.toString() + criterion.toString());
                     BENCHMARK.addRun("SACS", measure.toString(), criterion.toString());
                     anonymize(BenchmarkSetup.getHighdimensionalData(qi), measure, criterion);
-                    BENCHMARK.getResults().write(new File("results/results-low-execution-3.2-nomin.csv"));
+                    BENCHMARK.getResults().write(getResultsFile());
                 }
             }
         }
@@ -119,20 +225,56 @@ public class BenchmarkExperiment {
         config.setHeuristicSearchTimeLimit(Integer.MAX_VALUE);
         
         ARXAnonymizer anonymizer = new ARXAnonymizer();
+        anonymizer.setPropertyBackend(BACKEND);
+        anonymizer.setSolutionSpaceMemory(MEMORY);
+        anonymizer.setHistoryBudget(HISTORY_BUDGET);
+        anonymizer.setSolutionSpacePrimitiveLosses(PRIMITIVE_LOSSES);
+        anonymizer.setCheckResultCache(null); // Measure checks, not reuse of results
         anonymizer.anonymize(data, config);
         
-        NodeChecker.TIME = 0;
+        NodeCheckerStatistics statistics = new NodeCheckerStatistics();
         long timeOptimal = 0;
+        long historyCapacity = 0;
+        long historyDecisions = 0;
         for (int i=0; i<REPETITIONS; i++) {
             data.getHandle().release();
             anonymizer.anonymize(data, config);
             timeOptimal += anonymizer.getTime();
+            statistics.add(anonymizer.getStatistics());
+            AdaptiveHistoryPolicy policy = anonymizer.getHistoryPolicy();
+            if (policy != null) {
+                historyCapacity += policy.getCapacity();
+                historyDecisions += policy.getDecisions().size();
+                if (i == 0) {
+                    for (AdaptiveHistoryPolicy.Decision decision : policy.getDecisions()) {
+                        System.out.println(" - " + decision);
+                    }
+                }
+            } else {
+                historyCapacity += anonymizer.getHistorySize();
+            }
         }
         timeOptimal = timeOptimal / REPETITIONS;
-        long timeCheck = NodeChecker.TIME / REPETITIONS;
+        long timeCheck = statistics.getTotalTime() / REPETITIONS / 1000000L;
+        LatencyHistogram checks = statistics.getChecksAll();
         
         BENCHMARK.addValue(TIME_OPTIMAL, timeOptimal);
         BENCHMARK.addValue(TIME_HEURISTIC, 0);
         BENCHMARK.addValue(TIME_CHECK, timeCheck);
+        BENCHMARK.addValue(CHECKS, statistics.getChecks() / REPETITIONS);
+        BENCHMARK.addValue(CHECKS_CACHED, statistics.getCacheHits() / REPETITIONS);
+        BENCHMARK.addValue(CHECKS_UNOPTIMIZED, statistics.getChecksUnoptimized().getCount() / REPETITIONS);
+        BENCHMARK.addValue(CHECKS_ROLLUP, statistics.getChecksRollup().getCount() / REPETITIONS);
+        BENCHMARK.addValue(CHECKS_SNAPSHOT, statistics.getChecksSnapshot().getCount() / REPETITIONS);
+        BENCHMARK.addValue(TIME_CHECK_MEAN, (long) checks.getMean());
+        BENCHMARK.addValue(TIME_CHECK_P50, checks.getValueAtPercentile(50d));
+        BENCHMARK.addValue(TIME_CHECK_P99, checks.getValueAtPercentile(99d));
+        BENCHMARK.addValue(TIME_CHECK_UNOPTIMIZED, (long) statistics.getChecksUnoptimized().getMean());
+        BENCHMARK.addValue(TIME_CHECK_ROLLUP, (long) statistics.getChecksRollup().getMean());
+        BENCHMARK.addValue(TIME_CHECK_SNAPSHOT, (long) statistics.getChecksSnapshot().getMean());
+        BENCHMARK.addValue(TIME_HISTORY_STORE, statistics.getHistoryStore().getTotal() / REPETITIONS / 1000000L);
+        BENCHMARK.addValue(TIME_METRIC, statistics.getMetric().getTotal() / REPETITIONS / 1000000L);
+        BENCHMARK.addValue(HISTORY_CAPACITY, historyCapacity / REPETITIONS);
+        BENCHMARK.addValue(HISTORY_DECISIONS, historyDecisions / REPETITIONS);
     }
 }
@@ -0,0 +1,284 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2015 Florian Kohlmayer, Fabian Prasser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.check;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.deidentifier.arx.framework.check.history.History;
+import org.deidentifier.arx.framework.lattice.Transformation;
+
+/**
+ * Adapts the size of snapshots admitted to the history and the capacity of the history to the
+ * observed reuse of snapshots. Every window of checks, the number of snapshots offered to the history
+ * is compared to the number of SNAPSHOT transitions. If snapshots are rarely used, the maximal
+ * relative size of admitted snapshots and the capacity are reduced. If they are frequently used,
+ * both are increased again. The size threshold follows the largest snapshot that has actually been
+ * used. The configured thresholds are upper bounds, and the capacity is further bounded by a memory
+ * budget, which is estimated from the average size of admitted snapshots. When a threshold is reduced,
+ * the snapshots stored so far are evicted from the history, as they have been admitted under the
+ * previous thresholds. Every decision is logged.
+ *
+ * @author Fabian Prasser
+ */
+public class AdaptiveHistoryPolicy implements HistoryPolicy {
+
+    /**
+     * A decision of the policy
+     */
+    public static class Decision {
+
+        /** The number of checks performed before the decision */
+        public final long   checks;
+
+        /** The ratio of SNAPSHOT transitions to admitted snapshots in the last window */
+        public final double hitRate;
+
+        /** The new maximal size of a snapshot relative to the dataset */
+        public final double snapshotSizeDataset;
+
+        /** The new capacity */
+        public final int    capacity;
+
+        /**
+         * Creates a new instance
+         * @param checks
+         * @param hitRate
+         * @param snapshotSizeDataset
+         * @param capacity
+         */
+        Decision(long checks, double hitRate, double snapshotSizeDataset, int capacity) {
+            this.checks = checks;
+            this.hitRate = hitRate;
+            this.snapshotSizeDataset = snapshotSizeDataset;
+            this.capacity = capacity;
+        }
+
+        @Override
+        public String toString() {
+            return "Decision[checks=" + checks + ", hitRate=" + hitRate + ", snapshotSizeDataset=" +
+                   snapshotSizeDataset + ", capacity=" + capacity + "]";
+        }
+    }
+
+    /** Number of checks between two decisions */
+    private static final int     WINDOW           = 128;
+
+    /** Hit rate below which snapshots are considered useless */
+    private static final double  HIT_RATE_LOW     = 0.05d;
+
+    /** Hit rate above which snapshots are considered useful */
+    private static final double  HIT_RATE_HIGH    = 0.2d;
+
+    /** Lower bound for the relative snapshot size */
+    private static final double  MIN_SIZE_DATASET = 0.01d;
+
+    /** Lower bound for the capacity */
+    private static final int     MIN_CAPACITY     = 10;
+
+    /** Factor by which the capacity may exceed the configured capacity */
+    private static final int     MAX_GROWTH       = 8;
+
+    /** Slack above the largest snapshot used */
+    private static final double  SLACK            = 1.5d;
+
+    /** The history */
+    private final History        history;
+
+    /** The number of records */
+    private final int            dataLength;
+
+    /** Bytes per equivalence class in a snapshot */
+    private final long           bytesPerClass;
+
+    /** The memory budget */
+    private final long           budget;
+
+    /** The configured relative snapshot size, an upper bound */
+    private final double         maxSizeDataset;
+
+    /** The configured capacity */
+    private final int            initialCapacity;
+
+    /** The decisions */
+    private final List<Decision> decisions        = new ArrayList<Decision>();
+
+    /** The current relative snapshot size */
+    private double               sizeDataset;
+
+    /** The current capacity */
+    private int                  capacity;
+
+    /** Checks in total */
+    private long                 checks;
+
+    /** Estimated size of a snapshot in bytes, 0 if unknown */
+    private long                 bytesPerSnapshot;
+
+    /** Admitted snapshots in the current window */
+    private int                  windowStores;
+
+    /** Equivalence classes of admitted snapshots in the current window */
+    private long                 windowStoredClasses;
+
+    /** SNAPSHOT transitions in the current window */
+    private int                  windowUses;
+
+    /** Largest snapshot used in the current window, in equivalence classes */
+    private int                  windowMaxUsedClasses;
+
+    /** Checks in the current window */
+    private int                  windowChecks;
+
+    /**
+     * Creates a new instance
+     * @param history The history to control
+     * @param capacity The configured capacity of the history
+     * @param snapshotSizeDataset The configured maximal size of a snapshot relative to the dataset
+     * @param dataLength The number of records
+     * @param snapshotLength The number of ints per equivalence class in a snapshot
+     * @param budget The memory budget for all snapshots in bytes
+     */
+    AdaptiveHistoryPolicy(History history,
+                          int capacity,
+                          double snapshotSizeDataset,
+                          int dataLength,
+                          int snapshotLength,
+                          long budget) {
+        if (budget <= 0) {
+            throw new IllegalArgumentException("Budget must be positive");
+        }
+        this.history = history;
+        this.initialCapacity = capacity;
+        this.capacity = capacity;
+        this.maxSizeDataset = snapshotSizeDataset;
+        this.sizeDataset = snapshotSizeDataset;
+        this.dataLength = dataLength;
+        this.bytesPerClass = 4L * Math.max(1, snapshotLength);
+        this.budget = budget;
+    }
+
+    /**
+     * Returns all decisions taken so far
+     * @return
+     */
+    public List<Decision> getDecisions() {
+        return Collections.unmodifiableList(decisions);
+    }
+
+    /**
+     * Returns the current capacity
+     * @return
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the current maximal size of a snapshot relative to the dataset
+     * @return
+     */
+    public double getSnapshotSizeDataset() {
+        return sizeDataset;
+    }
+
+    @Override
+    public boolean admit(Transformation transformation, int classes) {
+        if (capacity == 0 || classes > sizeDataset * dataLength) {
+            return false;
+        }
+        windowStores++;
+        windowStoredClasses += classes;
+        return true;
+    }
+
+    @Override
+    public void recordCheck() {
+        checks++;
+        if (++windowChecks >= WINDOW) {
+            decide();
+        }
+    }
+
+    @Override
+    public void recordSnapshotUse(int[] snapshot) {
+        windowUses++;
+        windowMaxUsedClasses = Math.max(windowMaxUsedClasses, (int) (snapshot.length * 4L / bytesPerClass));
+    }
+
+    /**
+     * Adapts the thresholds to the current window and starts a new window
+     */
+    private void decide() {
+
+        double hitRate = windowStores == 0 ? 0d : (double) windowUses / (double) windowStores;
+        double newSizeDataset = sizeDataset;
+        int newCapacity = capacity;
+
+        // Size of admitted snapshots
+        if (windowUses > 0) {
+            newSizeDataset = (double) windowMaxUsedClasses / (double) dataLength * SLACK;
+            if (hitRate >= HIT_RATE_HIGH) {
+                newSizeDataset = Math.max(newSizeDataset, sizeDataset * SLACK);
+            }
+        } else if (windowStores > 0) {
+            newSizeDataset = sizeDataset / 2d;
+        }
+        newSizeDataset = Math.max(Math.min(newSizeDataset, maxSizeDataset), Math.min(MIN_SIZE_DATASET, maxSizeDataset));
+
+        // Capacity
+        if (hitRate >= HIT_RATE_HIGH) {
+            newCapacity = capacity * 2;
+        } else if (hitRate < HIT_RATE_LOW && windowStores > 0) {
+            newCapacity = capacity / 2;
+        }
+        long maxCapacity = (long) initialCapacity * MAX_GROWTH;
+        if (windowStores > 0) {
+            bytesPerSnapshot = Math.max(1L, windowStoredClasses / windowStores * bytesPerClass);
+        }
+        if (bytesPerSnapshot > 0) {
+            maxCapacity = Math.min(maxCapacity, budget / bytesPerSnapshot);
+        }
+        newCapacity = Math.max(newCapacity, Math.min(MIN_CAPACITY, initialCapacity));
+        newCapacity = (int) Math.min(newCapacity, maxCapacity);
+
+        // Keep at least one snapshot, even if a single snapshot exceeds the budget
+        newCapacity = Math.max(newCapacity, Math.min(1, initialCapacity));
+
+        // Apply and log
+        if (newSizeDataset != sizeDataset || newCapacity != capacity) {
+            if (newSizeDataset < sizeDataset || newCapacity < capacity) {
+                history.reset();
+            }
+            sizeDataset = newSizeDataset;
+            if (newCapacity != capacity) {
+                capacity = newCapacity;
+                history.setSize(capacity);
+            }
+            decisions.add(new Decision(checks, hitRate, sizeDataset, capacity));
+        }
+
+        // Start new window
+        windowChecks = 0;
+        windowStores = 0;
+        windowStoredClasses = 0;
+        windowUses = 0;
+        windowMaxUsedClasses = 0;
+    }
+}
@@ -0,0 +1,312 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2015 Florian Kohlmayer, Fabian Prasser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.check;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.deidentifier.arx.ARXConfiguration;
+import org.deidentifier.arx.criteria.PrivacyCriterion;
+import org.deidentifier.arx.framework.data.DataManager;
+import org.deidentifier.arx.framework.data.GeneralizationHierarchy;
+import org.deidentifier.arx.framework.lattice.SolutionSpace;
+import org.deidentifier.arx.framework.lattice.Transformation;
+import org.deidentifier.arx.metric.InformationLoss;
+
+import de.linearbits.jhpl.JHPLIterator.LongIterator;
+
+/**
+ * A cache for the results of checks, which survives multiple runs of the anonymizer. Results are
+ * stored per generalization vector and grouped by a fingerprint of the encoded data, the
+ * generalization hierarchies and the configuration of privacy models, suppression and utility
+ * measure. Before a run, the results stored for its fingerprint are attached to the
+ * transformations of the new solution space, from where the node checker returns them without
+ * checking again. After a run, the results of all checked transformations are stored. The cache
+ * retains the results of a limited number of fingerprints, which are evicted in LRU order.
+ *
+ * @author Fabian Prasser
+ */
+public class CheckResultCache {
+
+    /**
+     * A generalization vector usable as a key
+     */
+    private static class Key {
+
+        /** The generalization */
+        private final int[] generalization;
+
+        /** The hash code */
+        private final int   hashCode;
+
+        /**
+         * Creates a new instance
+         * @param generalization
+         */
+        Key(int[] generalization) {
+            this.generalization = generalization;
+            this.hashCode = Arrays.hashCode(generalization);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && Arrays.equals(generalization, ((Key) other).generalization);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /** Charset */
+    private static final Charset                              UTF8 = Charset.forName("UTF-8");
+
+    /** The results, by fingerprint */
+    private final LinkedHashMap<String, Map<Key, NodeChecker.Result>> results;
+
+    /**
+     * Creates a new cache, which retains the results of up to the given number of fingerprints
+     * @param maxFingerprints
+     */
+    public CheckResultCache(final int maxFingerprints) {
+        if (maxFingerprints < 1) {
+            throw new IllegalArgumentException("Number of fingerprints must be positive");
+        }
+        this.results = new LinkedHashMap<String, Map<Key, NodeChecker.Result>>(16, 0.75f, true) {
+            private static final long serialVersionUID = 2364138522397734834L;
+            @Override
+            protected boolean removeEldestEntry(Entry<String, Map<Key, NodeChecker.Result>> eldest) {
+                return size() > maxFingerprints;
+            }
+        };
+    }
+
+    /**
+     * Returns a fingerprint of the given data and configuration. The configuration is represented by
+     * the string representations of its privacy models and its utility measure, its suppression limit
+     * and its attribute weights.
+     * @param manager
+     * @param config
+     * @return
+     */
+    public static String getFingerprint(DataManager manager, ARXConfiguration config) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        // Data
+        update(digest, manager.getDataGeneralized().getArray());
+        update(digest, manager.getDataAnalyzed().getArray());
+
+        // Hierarchies
+        for (GeneralizationHierarchy hierarchy : manager.getHierarchies()) {
+            update(digest, hierarchy.getName());
+            update(digest, hierarchy.getArray());
+        }
+        update(digest, manager.getHierarchiesMinLevels());
+        update(digest, manager.getHierarchiesMaxLevels());
+
+        // Privacy models, in a defined order
+        List<String> criteria = new ArrayList<String>();
+        for (PrivacyCriterion criterion : config.getCriteria()) {
+            criteria.add(criterion.getClass().getName() + ":" + criterion.toString());
+        }
+        Collections.sort(criteria);
+        for (String criterion : criteria) {
+            update(digest, criterion);
+        }
+
+        // Suppression and utility
+        update(digest, String.valueOf(config.getMaxOutliers()));
+        update(digest, config.getMetric().getClass().getName() + ":" + config.getMetric().toString());
+        update(digest, String.valueOf(new TreeMap<String, Double>(config.getAttributeWeights())));
+
+        // Encode
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest()) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Updates the digest
+     * @param digest
+     * @param array
+     */
+    private static void update(MessageDigest digest, int[] array) {
+        byte[] bytes = new byte[array.length * 4 + 4];
+        write(bytes, 0, array.length);
+        for (int i = 0; i < array.length; i++) {
+            write(bytes, i * 4 + 4, array[i]);
+        }
+        digest.update(bytes);
+    }
+
+    /**
+     * Updates the digest
+     * @param digest
+     * @param array
+     */
+    private static void update(MessageDigest digest, int[][] array) {
+        byte[] length = new byte[4];
+        write(length, 0, array.length);
+        digest.update(length);
+        for (int[] row : array) {
+            update(digest, row);
+        }
+    }
+
+    /**
+     * Updates the digest
+     * @param digest
+     * @param string
+     */
+    private static void update(MessageDigest digest, String string) {
+        byte[] bytes = string.getBytes(UTF8);
+        byte[] length = new byte[4];
+        write(length, 0, bytes.length);
+        digest.update(length);
+        digest.update(bytes);
+    }
+
+    /**
+     * Writes the given int in big-endian order
+     * @param bytes
+     * @param offset
+     * @param value
+     */
+    private static void write(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Removes all results
+     */
+    public void clear() {
+        results.clear();
+    }
+
+    /**
+     * Returns the number of results stored for the given fingerprint
+     * @param fingerprint
+     * @return
+     */
+    public int size(String fingerprint) {
+        Map<Key, NodeChecker.Result> map = results.get(fingerprint);
+        return map == null ? 0 : map.size();
+    }
+
+    /**
+     * Attaches the results stored for the given fingerprint to the transformations of the given
+     * solution space. Transformations that have already been checked are left untouched.
+     * @param fingerprint
+     * @param solutionSpace
+     * @return The number of results attached
+     */
+    public int seed(String fingerprint, SolutionSpace solutionSpace) {
+        Map<Key, NodeChecker.Result> map = results.get(fingerprint);
+        if (map == null) {
+            return 0;
+        }
+        int count = 0;
+        for (Entry<Key, NodeChecker.Result> entry : map.entrySet()) {
+            Transformation transformation = solutionSpace.getTransformation(entry.getKey().generalization);
+            if (!transformation.hasProperty(solutionSpace.getPropertyChecked())) {
+                transformation.setData(copy(entry.getValue()));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Stores the results of all transformations of the given solution space that have been checked
+     * @param fingerprint
+     * @param solutionSpace
+     * @return The number of results stored
+     */
+    public int store(String fingerprint, SolutionSpace solutionSpace) {
+        Map<Key, NodeChecker.Result> map = results.get(fingerprint);
+        if (map == null) {
+            map = new HashMap<Key, NodeChecker.Result>();
+            results.put(fingerprint, map);
+        }
+        int count = 0;
+        LongIterator iterator = solutionSpace.getMaterializedTransformations();
+        while (iterator.hasNext()) {
+            long identifier = iterator.next();
+            if (!solutionSpace.hasProperty(identifier, solutionSpace.getPropertyChecked())) {
+                continue;
+            }
+            Transformation transformation = solutionSpace.getTransformation(identifier);
+            Boolean minimalClassSizeFulfilled = null;
+            if (transformation.hasProperty(solutionSpace.getPropertyKAnonymous())) {
+                minimalClassSizeFulfilled = true;
+            } else if (transformation.hasProperty(solutionSpace.getPropertyNotKAnonymous())) {
+                minimalClassSizeFulfilled = false;
+            }
+            map.put(new Key(transformation.getGeneralization().clone()),
+                    copy(new NodeChecker.Result(transformation.hasProperty(solutionSpace.getPropertyAnonymous()),
+                                                minimalClassSizeFulfilled,
+                                                transformation.getInformationLoss(),
+                                                transformation.getLowerBound())));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns a copy of the given result, which does not share mutable state with it
+     * @param result
+     * @return
+     */
+    private NodeChecker.Result copy(NodeChecker.Result result) {
+        return new NodeChecker.Result(result.privacyModelFulfilled,
+                                      result.minimalClassSizeFulfilled,
+                                      copy(result.informationLoss),
+                                      copy(result.lowerBound));
+    }
+
+    /**
+     * Returns a copy of the given information loss
+     * @param loss
+     * @return
+     */
+    private InformationLoss<?> copy(InformationLoss<?> loss) {
+        return loss == null ? null : loss.clone();
+    }
+}
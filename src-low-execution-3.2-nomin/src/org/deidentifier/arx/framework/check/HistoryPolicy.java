@@ -0,0 +1,50 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2015 Florian Kohlmayer, Fabian Prasser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.check;
+
+import org.deidentifier.arx.framework.lattice.Transformation;
+
+/**
+ * A policy which decides which snapshots a node checker offers to its history. Snapshots which
+ * are not admitted are never stored, which leaves room in the history for other snapshots. Snapshots
+ * of transformations for which the search algorithm forces a snapshot are always offered, and the
+ * history applies its own thresholds and eviction to all snapshots offered.
+ *
+ * @author Fabian Prasser
+ */
+public interface HistoryPolicy {
+
+    /**
+     * Returns whether the snapshot of the given transformation should be offered to the history
+     * @param transformation
+     * @param classes The number of equivalence classes of the snapshot
+     * @return
+     */
+    public boolean admit(Transformation transformation, int classes);
+
+    /**
+     * Records that a check has been performed
+     */
+    public void recordCheck();
+
+    /**
+     * Records that a check has been performed by transforming the given snapshot
+     * @param snapshot
+     */
+    public void recordSnapshotUse(int[] snapshot);
+}
@@ -0,0 +1,169 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2015 Florian Kohlmayer, Fabian Prasser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.check;
+
+import java.util.Arrays;
+
+/**
+ * A histogram of non-negative latencies in the spirit of HdrHistogram. Values below 64 are
+ * counted exactly, larger values are counted in buckets of 32 sub-buckets per power of two,
+ * which bounds the relative error by about 3%. Recording is allocation-free and takes constant
+ * time. Instances are not thread-safe.
+ *
+ * @author Fabian Prasser
+ */
+public class LatencyHistogram {
+
+    /** Number of bits of values which are counted exactly */
+    private static final int LINEAR_BITS = 6;
+
+    /** Number of values which are counted exactly */
+    private static final int LINEAR      = 1 << LINEAR_BITS;
+
+    /** Number of sub-buckets per power of two */
+    private static final int SUB_BUCKETS = LINEAR / 2;
+
+    /** The counts */
+    private final long[]     counts      = new long[LINEAR + (63 - LINEAR_BITS) * SUB_BUCKETS];
+
+    /** The number of values */
+    private long             count;
+
+    /** The sum of all values */
+    private long             total;
+
+    /** The largest value */
+    private long             max;
+
+    /**
+     * Returns the bucket of the given value
+     * @param value
+     * @return
+     */
+    private static int getIndex(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - LINEAR_BITS;
+        return LINEAR + (shift - 1) * SUB_BUCKETS + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * Returns the largest value which falls into the given bucket
+     * @param index
+     * @return
+     */
+    private static long getHighestValue(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int shift = (index - LINEAR) / SUB_BUCKETS + 1;
+        long top = (index - LINEAR) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+
+    /**
+     * Adds all values recorded by the given histogram
+     * @param other
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the number of recorded values
+     * @return
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the largest recorded value
+     * @return
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the arithmetic mean of all recorded values
+     * @return
+     */
+    public double getMean() {
+        return count == 0 ? 0d : (double) total / (double) count;
+    }
+
+    /**
+     * Returns the sum of all recorded values
+     * @return
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Returns the value below or at which the given percentage of values fall,
+     * with the precision of the histogram
+     * @param percentile In [0, 100]
+     * @return
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long threshold = Math.max(1L, (long) Math.ceil(percentile / 100d * count));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= threshold) {
+                return Math.min(getHighestValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Records a value
+     * @param value
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[getIndex(value)]++;
+        count++;
+        total += value;
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Removes all values
+     */
+    public void reset() {
+        Arrays.fill(counts, 0L);
+        count = 0;
+        total = 0;
+        max = 0;
+    }
+}
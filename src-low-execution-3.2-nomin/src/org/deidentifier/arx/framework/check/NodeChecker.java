@@ -41,6 +41,7 @@ import org.deidentifier.arx.metric.Metric;
  */
 public class NodeChecker {
     
+    /** Time spent checking in milliseconds, shared by all instances. See {@link #getStatistics()} for per-instance statistics. */
     public static long TIME = 0;
 
     /**
@@ -124,6 +125,18 @@ public class NodeChecker {
     /** Is a minimal class size required */
     private final boolean                         minimalClassSizeRequired;
 
+    /** Statistics about the checks performed */
+    private final NodeCheckerStatistics           statistics = new NodeCheckerStatistics();
+
+    /** The configured capacity of the history */
+    private final int                             historyMaxSize;
+
+    /** The configured maximal size of a snapshot relative to the dataset */
+    private final double                          snapshotSizeDataset;
+
+    /** The policy deciding which snapshots are offered to the history, if any */
+    private HistoryPolicy                         historyPolicy;
+
     /**
      * Creates a new NodeChecker instance.
      * 
@@ -144,6 +157,8 @@ public class NodeChecker {
                        final SolutionSpace solutionSpace) {
         
         // Initialize all operators
+        this.historyMaxSize = historyMaxSize;
+        this.snapshotSizeDataset = snapshotSizeDataset;
         this.metric = metric;
         this.config = config;
         this.dataGeneralized = manager.getDataGeneralized();
@@ -251,16 +266,24 @@ public class NodeChecker {
     public NodeChecker.Result check(final Transformation node, final boolean forceMeasureInfoLoss) {
         
         long time = System.currentTimeMillis();
+        long start = System.nanoTime();
         
         // If the result is already know, simply return it
         if (node.getData() != null && node.getData() instanceof NodeChecker.Result) {
+            statistics.recordCacheHit();
             TIME += System.currentTimeMillis() - time;
             return (NodeChecker.Result) node.getData();
         }
         
-        // Store snapshot from last check
+        // Store snapshot from last check. Snapshots forced by the algorithm bypass the policy
         if (stateMachine.getLastNode() != null) {
-            history.store(solutionSpace.getTransformation(stateMachine.getLastNode()), currentGroupify, stateMachine.getLastTransition().snapshot);
+            Transformation last = solutionSpace.getTransformation(stateMachine.getLastNode());
+            if (historyPolicy == null || last.hasProperty(solutionSpace.getPropertyForceSnapshot()) ||
+                historyPolicy.admit(last, currentGroupify.size())) {
+                long storeStart = System.nanoTime();
+                history.store(last, currentGroupify, stateMachine.getLastTransition().snapshot);
+                statistics.getHistoryStore().record(System.nanoTime() - storeStart);
+            }
         }
         
         // Transition
@@ -272,16 +295,25 @@ public class NodeChecker {
         currentGroupify = temp;
         
         // Apply transition
+        final LatencyHistogram histogram;
         switch (transition.type) {
         case UNOPTIMIZED:
             currentGroupify = transformer.apply(transition.projection, node.getGeneralization(), currentGroupify);
+            histogram = statistics.getChecksUnoptimized();
             break;
         case ROLLUP:
             currentGroupify = transformer.applyRollup(transition.projection, node.getGeneralization(), lastGroupify, currentGroupify);
+            histogram = statistics.getChecksRollup();
             break;
         case SNAPSHOT:
             currentGroupify = transformer.applySnapshot(transition.projection, node.getGeneralization(), currentGroupify, transition.snapshot);
+            histogram = statistics.getChecksSnapshot();
+            if (historyPolicy != null) {
+                historyPolicy.recordSnapshotUse(transition.snapshot);
+            }
             break;
+        default:
+            throw new IllegalStateException("Unknown transition: " + transition.type);
         }
         
         // We are done with transforming and adding
@@ -291,12 +323,18 @@ public class NodeChecker {
         }
         
         // Compute information loss and lower bound
+        long metricStart = System.nanoTime();
         InformationLossWithBound<?> result = (currentGroupify.isPrivacyModelFulfilled() || forceMeasureInfoLoss) ?
                 metric.getInformationLoss(node, currentGroupify) : null;
         InformationLoss<?> loss = result != null ? result.getInformationLoss() : null;
         InformationLoss<?> bound = result != null ? result.getLowerBound() : metric.getLowerBound(node, currentGroupify);
+        statistics.getMetric().record(System.nanoTime() - metricStart);
         
         // Return result;
+        histogram.record(System.nanoTime() - start);
+        if (historyPolicy != null) {
+            historyPolicy.recordCheck();
+        }
         TIME += System.currentTimeMillis() - time;
         return new NodeChecker.Result(currentGroupify.isPrivacyModelFulfilled(),
                                       minimalClassSizeRequired ? currentGroupify.isMinimalClassSizeFulfilled() : null,
@@ -312,6 +350,14 @@ public class NodeChecker {
         return config;
     }
     
+    /**
+     * Returns the policy deciding which snapshots are offered to the history, if any
+     * @return
+     */
+    public HistoryPolicy getHistoryPolicy() {
+        return historyPolicy;
+    }
+    
     /**
      * Returns the checkers history, if any.
      *
@@ -328,4 +374,36 @@ public class NodeChecker {
     public Metric<?> getMetric() {
         return metric;
     }
+    
+    /**
+     * Creates a policy adapting the size of snapshots and the capacity of the history of this checker to
+     * the observed reuse of snapshots, within the given memory budget. The configured snapshot size
+     * serves as an upper bound.
+     * @param bytes
+     * @return
+     */
+    public AdaptiveHistoryPolicy createAdaptiveHistoryPolicy(long bytes) {
+        return new AdaptiveHistoryPolicy(history,
+                                         historyMaxSize,
+                                         snapshotSizeDataset,
+                                         dataGeneralized.getDataLength(),
+                                         config.getSnapshotLength(),
+                                         bytes);
+    }
+    
+    /**
+     * Sets the policy deciding which snapshots are offered to the history. <code>null</code> offers all.
+     * @param policy
+     */
+    public void setHistoryPolicy(HistoryPolicy policy) {
+        this.historyPolicy = policy;
+    }
+    
+    /**
+     * Returns statistics about the checks performed by this checker
+     * @return
+     */
+    public NodeCheckerStatistics getStatistics() {
+        return statistics;
+    }
 }
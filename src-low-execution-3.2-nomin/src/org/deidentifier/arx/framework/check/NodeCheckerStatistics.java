@@ -0,0 +1,155 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2015 Florian Kohlmayer, Fabian Prasser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.check;
+
+/**
+ * Statistics about the checks performed by a node checker. All times are measured in nanoseconds.
+ * The time of a check is recorded in the histogram of the type of transition that was used
+ * to perform it. Checks which are answered from results already stored in the solution space are
+ * only counted as cache hits.
+ *
+ * @author Fabian Prasser
+ */
+public class NodeCheckerStatistics {
+
+    /** Checks which have been answered from the solution space */
+    private long                   cacheHits;
+
+    /** Checks performed by transforming the input dataset */
+    private final LatencyHistogram unoptimized  = new LatencyHistogram();
+
+    /** Checks performed by rolling up the previous result */
+    private final LatencyHistogram rollup       = new LatencyHistogram();
+
+    /** Checks performed by transforming a snapshot */
+    private final LatencyHistogram snapshot     = new LatencyHistogram();
+
+    /** Time spent storing snapshots in the history */
+    private final LatencyHistogram historyStore = new LatencyHistogram();
+
+    /** Time spent computing information loss and lower bounds */
+    private final LatencyHistogram metric       = new LatencyHistogram();
+
+    /**
+     * Adds the statistics collected by the given instance
+     * @param other
+     */
+    public void add(NodeCheckerStatistics other) {
+        cacheHits += other.cacheHits;
+        unoptimized.add(other.unoptimized);
+        rollup.add(other.rollup);
+        snapshot.add(other.snapshot);
+        historyStore.add(other.historyStore);
+        metric.add(other.metric);
+    }
+
+    /**
+     * Returns the number of checks which have been answered from the solution space
+     * @return
+     */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Returns the total number of checks, excluding cache hits
+     * @return
+     */
+    public long getChecks() {
+        return unoptimized.getCount() + rollup.getCount() + snapshot.getCount();
+    }
+
+    /**
+     * Returns the times of all checks, excluding cache hits
+     * @return
+     */
+    public LatencyHistogram getChecksAll() {
+        LatencyHistogram result = new LatencyHistogram();
+        result.add(unoptimized);
+        result.add(rollup);
+        result.add(snapshot);
+        return result;
+    }
+
+    /**
+     * Returns the times of checks performed by rolling up the previous result
+     * @return
+     */
+    public LatencyHistogram getChecksRollup() {
+        return rollup;
+    }
+
+    /**
+     * Returns the times of checks performed by transforming a snapshot
+     * @return
+     */
+    public LatencyHistogram getChecksSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Returns the times of checks performed by transforming the input dataset
+     * @return
+     */
+    public LatencyHistogram getChecksUnoptimized() {
+        return unoptimized;
+    }
+
+    /**
+     * Returns the times spent storing snapshots in the history
+     * @return
+     */
+    public LatencyHistogram getHistoryStore() {
+        return historyStore;
+    }
+
+    /**
+     * Returns the times spent computing information loss and lower bounds
+     * @return
+     */
+    public LatencyHistogram getMetric() {
+        return metric;
+    }
+
+    /**
+     * Returns the total time spent checking, excluding cache hits
+     * @return
+     */
+    public long getTotalTime() {
+        return unoptimized.getTotal() + rollup.getTotal() + snapshot.getTotal();
+    }
+
+    /**
+     * Resets all statistics
+     */
+    public void reset() {
+        cacheHits = 0;
+        unoptimized.reset();
+        rollup.reset();
+        snapshot.reset();
+        historyStore.reset();
+        metric.reset();
+    }
+
+    /**
+     * Records a cache hit
+     */
+    void recordCacheHit() {
+        cacheHits++;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2015 Florian Kohlmayer, Fabian Prasser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.lattice;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes checkpoints of a solution space to a file in a background thread. The search only
+ * pays for creating an in-memory copy of the solution space. Checkpoints are created at most
+ * once per interval and only if the previous checkpoint has been written completely.
+ *
+ * @author Fabian Prasser
+ */
+public class CheckpointWriter {
+
+    /** The file */
+    private final File              file;
+    /** The fingerprint of the data and configuration, may be null */
+    private final String            fingerprint;
+    /** The interval in milliseconds */
+    private final long              interval;
+    /** The time at which the last checkpoint has been submitted */
+    private long                    last;
+    /** The checkpoint which is to be written next, if any */
+    private SolutionSpaceCheckpoint pending;
+    /** Whether a checkpoint is currently being written */
+    private boolean                 writing;
+    /** The first error, if any */
+    private IOException             error;
+    /** The background thread, if started */
+    private Thread                  thread;
+
+    /**
+     * Creates a new instance
+     * @param file The file to which checkpoints are written
+     * @param interval The minimal interval between two checkpoints in milliseconds
+     * @param fingerprint The fingerprint of the data and configuration, which is stored in each checkpoint, may be null
+     */
+    public CheckpointWriter(File file, long interval, String fingerprint) {
+        if (file == null) {
+            throw new NullPointerException("File must not be null");
+        }
+        if (interval < 0) {
+            throw new IllegalArgumentException("Interval must not be negative");
+        }
+        this.file = file;
+        this.interval = interval;
+        this.fingerprint = fingerprint;
+        this.last = System.currentTimeMillis();
+    }
+
+    /**
+     * Waits until all submitted checkpoints have been written and stops the background thread
+     * @throws IOException If writing any checkpoint failed
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            while (pending != null || writing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (thread != null) {
+                thread.interrupt();
+                thread = null;
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    /**
+     * Returns the file
+     * @return
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the fingerprint of the data and configuration, may be null
+     * @return
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns whether a new checkpoint should be created
+     * @return
+     */
+    public synchronized boolean isDue() {
+        return pending == null && !writing && System.currentTimeMillis() - last >= interval;
+    }
+
+    /**
+     * Submits a checkpoint, which is written in the background
+     * @param checkpoint
+     */
+    public synchronized void submit(SolutionSpaceCheckpoint checkpoint) {
+        pending = checkpoint;
+        last = System.currentTimeMillis();
+        if (thread == null) {
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    CheckpointWriter.this.run();
+                }
+            }, "Checkpoint writer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Writes checkpoints until interrupted
+     */
+    private void run() {
+        while (true) {
+            SolutionSpaceCheckpoint checkpoint;
+            synchronized (this) {
+                while (pending == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                checkpoint = pending;
+                pending = null;
+                writing = true;
+            }
+            try {
+                checkpoint.write(file);
+            } catch (IOException e) {
+                synchronized (this) {
+                    if (error == null) {
+                        error = e;
+                    }
+                }
+            } finally {
+                synchronized (this) {
+                    writing = false;
+                    notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2015 Florian Kohlmayer, Fabian Prasser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.lattice;
+
+import java.util.Arrays;
+
+import org.deidentifier.arx.metric.InformationLoss;
+
+/**
+ * A map from identifiers of transformations to information loss, which stores losses in primitive
+ * columns instead of objects. Keys are held in a <code>long[]</code> with open addressing and linear
+ * probing, values in a <code>double[]</code> with a fixed number of entries per key. Losses are
+ * converted by a metric-specific codec. Encoded losses can be compared without decoding them.
+ *
+ * @author Fabian Prasser
+ */
+public class InformationLossStore {
+
+    /**
+     * Converts information loss to and from a fixed number of doubles
+     *
+     * @author Fabian Prasser
+     */
+    public static interface Codec {
+
+        /**
+         * Compares two encoded losses with the semantics of {@link InformationLoss#compareTo(InformationLoss)}
+         * @param values
+         * @param offset1
+         * @param offset2
+         * @return
+         */
+        public int compare(double[] values, int offset1, int offset2);
+
+        /**
+         * Decodes a loss
+         * @param values
+         * @param offset
+         * @return
+         */
+        public InformationLoss<?> decode(double[] values, int offset);
+
+        /**
+         * Encodes a loss
+         * @param loss
+         * @param values
+         * @param offset
+         */
+        public void encode(InformationLoss<?> loss, double[] values, int offset);
+
+        /**
+         * Returns the number of doubles per loss
+         * @return
+         */
+        public int getWidth();
+    }
+
+    /**
+     * Base class for codecs of metrics with a single numeric value, which are compared naturally
+     *
+     * @author Fabian Prasser
+     */
+    public static abstract class ScalarCodec implements Codec {
+
+        @Override
+        public int compare(double[] values, int offset1, int offset2) {
+            return Double.compare(values[offset1], values[offset2]);
+        }
+
+        @Override
+        public void encode(InformationLoss<?> loss, double[] values, int offset) {
+            values[offset] = ((Number) loss.getValue()).doubleValue();
+        }
+
+        @Override
+        public int getWidth() {
+            return 1;
+        }
+    }
+
+    /** Constant */
+    private static final long  EMPTY            = -1L;
+    /** Constant */
+    private static final int   INITIAL_CAPACITY = 16;
+    /** Constant */
+    private static final float LOAD_FACTOR      = 0.75f;
+
+    /** The codec */
+    private final Codec        codec;
+    /** The number of doubles per key */
+    private final int          width;
+    /** The keys */
+    private long[]             keys;
+    /** The values */
+    private double[]           values;
+    /** The number of keys */
+    private int                size;
+    /** Number of keys at which the arrays are grown */
+    private int                threshold;
+
+    /**
+     * Creates a new instance
+     * @param codec
+     */
+    public InformationLossStore(Codec codec) {
+        this.codec = codec;
+        this.width = codec.getWidth();
+        this.allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Compares the losses stored for the given identifiers
+     * @param identifier1
+     * @param identifier2
+     * @return
+     */
+    public int compare(long identifier1, long identifier2) {
+        int slot1 = slotFor(identifier1);
+        int slot2 = slotFor(identifier2);
+        if (keys[slot1] == EMPTY || keys[slot2] == EMPTY) {
+            throw new IllegalStateException("No information loss available");
+        }
+        return codec.compare(values, slot1 * width, slot2 * width);
+    }
+
+    /**
+     * Returns the loss for the given identifier, null if there is none. The loss is decoded into a
+     * new object on every call.
+     * @param identifier
+     * @return
+     */
+    public InformationLoss<?> get(long identifier) {
+        int slot = slotFor(identifier);
+        return keys[slot] == EMPTY ? null : codec.decode(values, slot * width);
+    }
+
+    /**
+     * Returns the memory consumption in bytes
+     * @return
+     */
+    public long getByteSize() {
+        return keys.length * 8L + values.length * 8L;
+    }
+
+    /**
+     * Returns the identifiers of all stored losses
+     * @return
+     */
+    public long[] getIdentifiers() {
+        long[] result = new long[size];
+        int index = 0;
+        for (long key : keys) {
+            if (key != EMPTY) {
+                result[index++] = key;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether the store is empty
+     * @return
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Stores the loss for the given identifier. Storing null removes the loss.
+     * @param identifier
+     * @param loss
+     */
+    public void put(long identifier, InformationLoss<?> loss) {
+        if (loss == null) {
+            remove(identifier);
+            return;
+        }
+        int slot = slotFor(identifier);
+        if (keys[slot] == EMPTY) {
+            if (size == threshold) {
+                rehash(keys.length * 2);
+                slot = slotFor(identifier);
+            }
+            keys[slot] = identifier;
+            size++;
+        }
+        codec.encode(loss, values, slot * width);
+    }
+
+    /**
+     * Returns the number of keys
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Allocates arrays for the given capacity
+     * @param capacity
+     */
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        Arrays.fill(this.keys, EMPTY);
+        this.values = new double[capacity * width];
+        this.threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /**
+     * Hashes the given key
+     * @param key
+     * @return
+     */
+    private int hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    /**
+     * Rehashes all keys into arrays with the given capacity
+     * @param capacity
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = this.keys;
+        double[] oldValues = this.values;
+        this.allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slotFor(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                System.arraycopy(oldValues, i * width, values, slot * width, width);
+            }
+        }
+    }
+
+    /**
+     * Removes the given key. Subsequent keys of the same cluster are shifted backwards,
+     * which keeps probing sequences intact.
+     * @param identifier
+     */
+    private void remove(long identifier) {
+        int mask = keys.length - 1;
+        int slot = slotFor(identifier);
+        if (keys[slot] == EMPTY) {
+            return;
+        }
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            long key = keys[next];
+            if (key == EMPTY) {
+                break;
+            }
+            int home = hash(key) & mask;
+            // Move, if the home of the key is not within (slot, next]
+            if (slot <= next ? (home <= slot || home > next) : (home <= slot && home > next)) {
+                keys[slot] = key;
+                System.arraycopy(values, next * width, values, slot * width, width);
+                slot = next;
+            }
+        }
+        keys[slot] = EMPTY;
+        size--;
+    }
+
+    /**
+     * Returns the slot of the given key or the empty slot at which it would be inserted
+     * @param key
+     * @return
+     */
+    private int slotFor(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+}
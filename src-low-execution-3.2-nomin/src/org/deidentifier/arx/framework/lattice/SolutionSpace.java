@@ -17,17 +17,24 @@
 
 package org.deidentifier.arx.framework.lattice;
 
+import java.util.Arrays;
+
 import org.deidentifier.arx.ARXConfiguration;
 import org.deidentifier.arx.ARXConfiguration.Monotonicity;
 import org.deidentifier.arx.ARXLattice;
 import org.deidentifier.arx.ARXLattice.ARXNode;
 import org.deidentifier.arx.ARXLattice.Anonymity;
+import org.deidentifier.arx.framework.check.NodeChecker;
 import org.deidentifier.arx.metric.InformationLoss;
 
 import com.carrotsearch.hppc.LongObjectOpenHashMap;
+import com.carrotsearch.hppc.cursors.LongObjectCursor;
 
 import de.linearbits.jhpl.JHPLIterator.LongIterator;
 import de.linearbits.jhpl.Lattice;
+import de.linearbits.jhpl.Lattice.Backend;
+import de.linearbits.jhpl.Lattice.Encoding;
+import de.linearbits.jhpl.Lattice.Memory;
 import de.linearbits.jhpl.PredictiveProperty;
 import de.linearbits.jhpl.PredictiveProperty.Direction;
 
@@ -37,8 +44,17 @@ import de.linearbits.jhpl.PredictiveProperty.Direction;
  */
 public class SolutionSpace {
 
+    /** Constant: number of updates of data after which the byte budget is checked */
+    private static final int                          BUDGET_INTERVAL             = 256;
+    /** Constant: estimated number of bytes consumed by an entry in the map of data */
+    private static final long                         DATA_ENTRY_BYTES            = 64L;
+
     /** Information loss */
     private LongObjectOpenHashMap<Object>             data                        = new LongObjectOpenHashMap<Object>();
+    /** Number of updates of data since the budget has been checked */
+    private int                                       dataUpdates                 = 0;
+    /** Number of entries in the map of data below which no further eviction is attempted */
+    private int                                       dataEvictionSize            = 0;
     /** The backing JHPL lattice */
     private final Lattice<Integer, Integer>           lattice;
     /** Information loss */
@@ -47,6 +63,24 @@ public class SolutionSpace {
     private final int[]                               offsetIndices;
     /** The offset the level */
     private final int                                 offsetLevel;
+    /** Whether any offset is not zero */
+    private final boolean                             offset;
+    /** Whether the order of dimensions in JHPL's space is the reverse of ARX's order */
+    private final boolean                             reversed;
+    /** The minimal levels, in ARX's order */
+    private final int[]                               minLevels;
+    /** The maximal levels, in ARX's order */
+    private final int[]                               maxLevels;
+    /** Writer for checkpoints, if any */
+    private CheckpointWriter                          checkpointWriter            = null;
+    /** Open transformations restored from a checkpoint */
+    private long[]                                    open                        = new long[0];
+    /** Identifier of the checked transformation with the least information loss that fulfills the privacy model, -1 if none */
+    private long                                      optimum                     = -1L;
+    /** Information loss of the optimum */
+    private InformationLoss<?>                        optimumLoss                 = null;
+    /** Buffer for properties resulting from a check */
+    private final PredictiveProperty[]                bufferProperties            = new PredictiveProperty[3];
     
     /** Potentially changing property */
     private PredictiveProperty                        propertyAnonymous           = new PredictiveProperty("Anonymous",
@@ -83,6 +117,10 @@ public class SolutionSpace {
 
     /** Information loss */
     private LongObjectOpenHashMap<InformationLoss<?>> utility                     = new LongObjectOpenHashMap<InformationLoss<?>>();
+    /** Information loss, in primitive columns, if any */
+    private InformationLossStore                      utilityStore                = null;
+    /** Lower bounds, in primitive columns, if any */
+    private InformationLossStore                      lowerBoundStore             = null;
 
     /**
      * For de-serialization
@@ -115,13 +153,59 @@ public class SolutionSpace {
      * @param maxLevels
      */
     public SolutionSpace(int[] minLevels, int[] maxLevels) {
+        this(minLevels, maxLevels, Memory.HEAP);
+    }
+
+    /**
+     * Creates a new solution space
+     * @param minLevels
+     * @param maxLevels
+     * @param memory The memory used for backing the solution space
+     */
+    public SolutionSpace(int[] minLevels, int[] maxLevels, Memory memory) {
+        this(minLevels, maxLevels, memory, true);
+    }
+
+    /**
+     * Creates a new solution space
+     * @param minLevels
+     * @param maxLevels
+     * @param memory The memory used for backing the solution space
+     * @param reversed Whether to reverse the order of dimensions in JHPL's space. If false, JHPL's
+     *                 order matches ARX's generalization vectors and transformations are converted
+     *                 without copying arrays. Identifiers differ between both modes.
+     */
+    public SolutionSpace(int[] minLevels, int[] maxLevels, Memory memory, boolean reversed) {
+        this(minLevels, maxLevels, memory, reversed, Encoding.DENSE);
+    }
+
+    /**
+     * Creates a new solution space
+     * @param minLevels
+     * @param maxLevels
+     * @param memory The memory used for backing the solution space
+     * @param reversed Whether to reverse the order of dimensions in JHPL's space
+     * @param encoding The encoding of transformations as identifiers. Bit-packed identifiers are 
+     *                 decoded without divisions, but are not consecutive. Sparse identifiers are 
+     *                 assigned on demand and support solution spaces with more than Long.MAX_VALUE 
+     *                 transformations. They must be requested explicitly, as sparse solution spaces 
+     *                 provide no multipliers.
+     * @throws IllegalArgumentException If the solution space is too large for the given encoding
+     */
+    public SolutionSpace(int[] minLevels, int[] maxLevels, Memory memory, boolean reversed, Encoding encoding) {
         
         // Create offsets
-        minLevels = reverse(minLevels);
-        maxLevels = reverse(maxLevels);
+        this.reversed = reversed;
+        this.minLevels = minLevels.clone();
+        this.maxLevels = maxLevels.clone();
+        if (reversed) {
+            minLevels = reverse(minLevels);
+            maxLevels = reverse(maxLevels);
+        }
         this.offsetIndices = minLevels.clone();
         int lvl = 0; for (int i : offsetIndices) lvl+=i;
         this.offsetLevel = lvl;
+        this.offset = lvl != 0;
         
         
         // Create lattice
@@ -134,7 +218,104 @@ public class SolutionSpace {
             }
             elements[i] = element;
         }
-        this.lattice = new Lattice<Integer, Integer>(elements);
+        this.lattice = new Lattice<Integer, Integer>(memory, encoding, elements);
+        if (encoding != Encoding.SPARSE && this.lattice.getEncoding() == Encoding.SPARSE) {
+            throw new IllegalArgumentException("Solution space has more than Long.MAX_VALUE transformations, which requires sparse identifiers");
+        }
+    }
+
+    /**
+     * Restores a solution space from a checkpoint. All transformations, properties, information loss
+     * and lower bounds are restored in bulk.
+     * @param checkpoint
+     * @param memory The memory used for backing the solution space
+     * @param backend The data structure used for representing predictive properties
+     * @param codec The codec for storing information loss in primitive columns, may be null
+     */
+    public SolutionSpace(SolutionSpaceCheckpoint checkpoint, Memory memory, Backend backend, InformationLossStore.Codec codec) {
+        this(checkpoint.getMinLevels(), checkpoint.getMaxLevels(), memory, checkpoint.isReversed(), checkpoint.getLattice().getEncoding());
+        this.setPropertyBackend(backend);
+        this.setAnonymityPropertyPredictable(checkpoint.isPredictable());
+        if (codec != null) {
+            this.setInformationLossCodec(codec);
+        }
+        this.lattice.restore(checkpoint.getLattice(), getProperties());
+        long[] identifiers = checkpoint.getUtilityIdentifiers();
+        InformationLoss<?>[] losses = checkpoint.getUtility();
+        for (int i = 0; i < identifiers.length; i++) {
+            this.setInformationLoss(identifiers[i], losses[i]);
+        }
+        identifiers = checkpoint.getLowerBoundIdentifiers();
+        losses = checkpoint.getLowerBound();
+        for (int i = 0; i < identifiers.length; i++) {
+            this.setLowerBound(identifiers[i], losses[i]);
+        }
+        this.open = checkpoint.getOpenTransformations();
+        if (checkpoint.getOptimum() != -1L) {
+            this.optimum = checkpoint.getOptimum();
+            this.optimumLoss = getInformationLoss(optimum);
+        }
+    }
+
+    /**
+     * Creates a checkpoint in the background, if a checkpoint writer has been set and
+     * a new checkpoint is due. This is done automatically whenever the result of a check is
+     * recorded. Search algorithms may call it to include their open transformations.
+     * @param open The identifiers of the open transformations of the search algorithm
+     * @param n The number of identifiers
+     * @return Whether a checkpoint has been created
+     */
+    public boolean checkpoint(long[] open, int n) {
+        if (checkpointWriter == null || !checkpointWriter.isDue()) {
+            return false;
+        }
+        checkpointWriter.submit(createCheckpoint(open, n, checkpointWriter.getFingerprint()));
+        return true;
+    }
+
+    /**
+     * Creates a checkpoint of this solution space, which can be restored with
+     * {@link #SolutionSpace(SolutionSpaceCheckpoint, Memory, Backend, InformationLossStore.Codec)}.
+     * Data cached for transformations is not included.
+     * @param open The identifiers of the open transformations of the search algorithm
+     * @param n The number of identifiers
+     * @param fingerprint The fingerprint of the data and configuration, may be null
+     * @return
+     */
+    public SolutionSpaceCheckpoint createCheckpoint(long[] open, int n, String fingerprint) {
+
+        // Information loss
+        long[] utilityIdentifiers;
+        long[] lowerBoundIdentifiers;
+        if (utilityStore != null) {
+            utilityIdentifiers = utilityStore.getIdentifiers();
+            lowerBoundIdentifiers = lowerBoundStore.getIdentifiers();
+        } else {
+            utilityIdentifiers = getIdentifiers(utility);
+            lowerBoundIdentifiers = getIdentifiers(lowerBound);
+        }
+        InformationLoss<?>[] utility = new InformationLoss<?>[utilityIdentifiers.length];
+        for (int i = 0; i < utility.length; i++) {
+            utility[i] = getInformationLoss(utilityIdentifiers[i]);
+        }
+        InformationLoss<?>[] lowerBound = new InformationLoss<?>[lowerBoundIdentifiers.length];
+        for (int i = 0; i < lowerBound.length; i++) {
+            lowerBound[i] = getLowerBound(lowerBoundIdentifiers[i]);
+        }
+        
+        // Create
+        return new SolutionSpaceCheckpoint(fingerprint,
+                                           minLevels.clone(),
+                                           maxLevels.clone(),
+                                           reversed,
+                                           propertyAnonymous.getDirection() != Direction.NONE,
+                                           lattice.checkpoint(getProperties()),
+                                           utilityIdentifiers,
+                                           utility,
+                                           lowerBoundIdentifiers,
+                                           lowerBound,
+                                           Arrays.copyOf(open, n),
+                                           optimum);
     }
     
     /**
@@ -157,6 +338,15 @@ public class SolutionSpace {
         }
         return level;
     }
+
+    /**
+     * Returns the level of the transformation with the given identifier
+     * @param identifier
+     * @return
+     */
+    public int getLevel(long identifier) {
+        return fromJHPL(lattice.nodes().getLevel(identifier));
+    }
     
     /**
      * Returns all materialized transformations
@@ -166,12 +356,62 @@ public class SolutionSpace {
         return lattice.listNodesAsIdentifiers();
     }
 
+    /**
+     * Returns the checked transformation with the least information loss that fulfills the
+     * privacy model, including transformations restored from a checkpoint, null if there is none
+     * @return
+     */
+    public Transformation getOptimum() {
+        return optimum == -1L ? null : getTransformation(optimum);
+    }
+
+    /**
+     * Returns the identifiers of the open transformations restored from a checkpoint,
+     * an empty array if the solution space has not been restored. Only algorithms which report
+     * their open transformations via {@link #checkpoint(long[], int)} can continue from them.
+     * @return
+     */
+    public long[] getOpenTransformations() {
+        return open.clone();
+    }
+
+    /**
+     * Writes the identifiers of all predecessors of the transformation with the given identifier 
+     * into the given array, in the same order as {@link Transformation#getPredecessors()}. This 
+     * method does not allocate memory.
+     * @param identifier
+     * @param result An array with at least one slot per dimension
+     * @return The number of predecessors
+     */
+    public int getPredecessors(long identifier, long[] result) {
+        return lattice.nodes().predecessors(identifier, result);
+    }
+
+    /**
+     * Writes the identifiers of all successors of the transformation with the given identifier 
+     * into the given array, in the same order as {@link Transformation#getSuccessors()}. This 
+     * method does not allocate memory.
+     * @param identifier
+     * @param result An array with at least one slot per dimension
+     * @return The number of successors
+     */
+    public int getSuccessors(long identifier, long[] result) {
+        int count = lattice.nodes().successors(identifier, result);
+        if (reversed) {
+            reverse(result, count);
+        }
+        return count;
+    }
+
     /**
      * Returns the multipliers
      * @return
      */
     public long[] getMultipliersForHighDimensionalData() {
-        long[] multiplier = lattice.nodes().getMultiplier();
+        long[] multiplier = getMultiplier();
+        if (!reversed) {
+            return multiplier.clone();
+        }
         long[] result = new long[multiplier.length];
         for (int i = 0; i < result.length; i++) {
             result[result.length - i - 1] = multiplier[i];
@@ -184,10 +424,10 @@ public class SolutionSpace {
      * @return
      */
     public int[] getMultipliersForLowDimensionalData() {
-        long[] multiplier = lattice.nodes().getMultiplier();
+        long[] multiplier = getMultiplier();
         int[] result = new int[multiplier.length];
         for (int i = 0; i < result.length; i++) {
-            result[result.length - i - 1] = (int) multiplier[i];
+            result[reversed ? result.length - i - 1 : i] = (int) multiplier[i];
         }
         return result;
     }
@@ -273,7 +513,7 @@ public class SolutionSpace {
     }
 
     /**
-     * Returns the overall number of transformations in the solution space
+     * Returns the overall number of transformations in the solution space, at most Long.MAX_VALUE
      * @return
      */
     public long getSize() {
@@ -309,12 +549,28 @@ public class SolutionSpace {
     }
 
     /**
-     * Returns the utility of the transformation with the given identifier
+     * Returns the utility of the transformation with the given identifier. If information loss is
+     * stored in primitive columns, every call decodes a new object. Use {@link #compareUtility(long, long)}
+     * for comparisons.
      * @param identifier
      * @return
      */
     public InformationLoss<?> getUtility(long identifier) {
-        return utility.getOrDefault(identifier, null);
+        return getInformationLoss(identifier);
+    }
+
+    /**
+     * Compares the utility of the transformations with the given identifiers. Avoids decoding
+     * information loss, if it is stored in primitive columns.
+     * @param identifier1
+     * @param identifier2
+     * @return
+     */
+    public int compareUtility(long identifier1, long identifier2) {
+        if (utilityStore != null) {
+            return utilityStore.compare(identifier1, identifier2);
+        }
+        return getUtility(identifier1).compareTo(getUtility(identifier2));
     }
     
     /**
@@ -324,10 +580,34 @@ public class SolutionSpace {
      * @return
      */
     public boolean hasProperty(int[] transformation, PredictiveProperty property) {
+        if (!reversed && lattice.getEncoding() != Encoding.SPARSE) {
+            return lattice.hasProperty(lattice.space().toId(transformation, offsetIndices), property);
+        }
         int[] index = toJHPL(transformation);
         return lattice.hasProperty(index, property);
     }
 
+    /**
+     * Returns whether the transformation with the given identifier has the given property
+     * @param identifier
+     * @param property
+     * @return
+     */
+    public boolean hasProperty(long identifier, PredictiveProperty property) {
+        return lattice.hasProperty(identifier, property);
+    }
+
+    /**
+     * Determines for a batch of transformations whether they have the given property
+     * @param identifiers
+     * @param n The number of identifiers
+     * @param property
+     * @param result
+     */
+    public void hasProperty(long[] identifiers, int n, PredictiveProperty property, boolean[] result) {
+        lattice.hasProperty(identifiers, n, property, result);
+    }
+
     /**
      * Determines whether a direct parent-child relationship exists.
      * @param parent
@@ -361,11 +641,74 @@ public class SolutionSpace {
         return true;
     }
 
+    /**
+     * Returns a new cursor, which can be reset to any transformation in this solution space
+     * via {@link Transformation#reset(long)}. Search algorithms should use cursors for
+     * transformations which are only accessed temporarily.
+     * @return
+     */
+    public Transformation newTransformationCursor() {
+        return new Transformation(lattice, this);
+    }
+
+    /**
+     * Sets the given property for the transformation with the given identifier
+     * @param identifier
+     * @param property
+     */
+    public void putProperty(long identifier, PredictiveProperty property) {
+        lattice.putProperty(identifier, property);
+    }
+
+    /**
+     * Sets the given property for all direct predecessors of the transformation with the given identifier
+     * @param identifier
+     * @param property
+     */
+    public void putPropertyToPredecessors(long identifier, PredictiveProperty property) {
+        lattice.putPropertyToPredecessors(identifier, property);
+    }
+
+    /**
+     * Sets the given property for all direct successors of the transformation with the given identifier
+     * @param identifier
+     * @param property
+     */
+    public void putPropertyToSuccessors(long identifier, PredictiveProperty property) {
+        lattice.putPropertyToSuccessors(identifier, property);
+    }
+
+    /**
+     * Sets the given property for a batch of transformations
+     * @param identifiers
+     * @param n The number of identifiers
+     * @param property
+     */
+    public void putProperty(long[] identifiers, int n, PredictiveProperty property) {
+        lattice.putProperty(identifiers, n, property);
+    }
+
+    /**
+     * Stores the result of checking the transformation with the given identifier. All properties are
+     * stored with a single update of the underlying lattice.
+     * @param identifier
+     * @param result
+     */
+    public void recordCheck(long identifier, NodeChecker.Result result) {
+        lattice.putProperties(identifier, getProperties(result));
+        setInformationLoss(identifier, result.informationLoss);
+        setLowerBound(identifier, result.lowerBound);
+        afterCheck(identifier, result.privacyModelFulfilled, result.informationLoss);
+    }
+
     /**
      * Makes the anonymity property predictable
      * @param predictable
      */
     public void setAnonymityPropertyPredictable(boolean predictable) {
+        if (predictable == (propertyAnonymous.getDirection() != Direction.NONE)) {
+            return;
+        }
         if (predictable) {
             propertyAnonymous = new PredictiveProperty("Anonymous", Direction.UP);
             propertyNotAnonymous = new PredictiveProperty("Not anonymous", Direction.DOWN);
@@ -375,6 +718,60 @@ public class SolutionSpace {
         }
     }
 
+    /**
+     * Limits the memory consumed by the solution space. When the budget is exceeded, the
+     * Visited and Expanded properties of transformations far below the current search frontier
+     * are evicted. Data associated with transformations, such as cached check results, counts 
+     * towards the budget as well and is evicted once the transformation has been checked. 
+     * Predictive properties are never evicted.
+     * @param bytes
+     */
+    public void setByteBudget(long bytes) {
+        lattice.setByteBudget(bytes);
+        lattice.setEvictable(propertyVisited);
+        lattice.setEvictable(propertyExpanded);
+    }
+
+    /**
+     * Sets a writer, which is used for writing checkpoints in the background
+     * @param writer
+     * @see #checkpoint(long[], int)
+     */
+    public void setCheckpointWriter(CheckpointWriter writer) {
+        this.checkpointWriter = writer;
+    }
+
+    /**
+     * Stores information loss and lower bounds in primitive columns, which are converted 
+     * with the given codec. Must be called before any information loss is stored.
+     * @param codec
+     */
+    public void setInformationLossCodec(InformationLossStore.Codec codec) {
+        if (!utility.isEmpty() || !lowerBound.isEmpty()) {
+            throw new IllegalStateException("Information loss has already been stored");
+        }
+        utilityStore = new InformationLossStore(codec);
+        lowerBoundStore = new InformationLossStore(codec);
+    }
+
+    /**
+     * Enables or disables a filter that answers lookups for transformations which
+     * have not been stored, without probing the underlying data structures
+     * @param enabled
+     */
+    public void setLookupFilter(boolean enabled) {
+        lattice.setFilter(enabled);
+    }
+
+    /**
+     * Sets the data structure used for representing predictive properties. Must be called
+     * before any property is accessed.
+     * @param backend
+     */
+    public void setPropertyBackend(Backend backend) {
+        lattice.setBackend(backend);
+    }
+
     /**
      * Returns all transformations in the solution space
      * @return
@@ -392,6 +789,81 @@ public class SolutionSpace {
         return lattice.unsafe().listAllNodesAsIdentifiers(toJHPL(level));
     }
 
+    /**
+     * Returns the identifiers of all keys in the given map
+     * @param map
+     * @return
+     */
+    private long[] getIdentifiers(LongObjectOpenHashMap<InformationLoss<?>> map) {
+        long[] result = new long[map.size()];
+        int index = 0;
+        for (LongObjectCursor<InformationLoss<?>> cursor : map) {
+            result[index++] = cursor.key;
+        }
+        return result;
+    }
+
+    /**
+     * Returns JHPL's multipliers, which are not defined for identifiers assigned on demand
+     * @return
+     */
+    private long[] getMultiplier() {
+        long[] multiplier = lattice.nodes().getMultiplier();
+        if (multiplier == null) {
+            throw new UnsupportedOperationException("Identifiers of this solution space can not be computed from transformations");
+        }
+        return multiplier;
+    }
+
+    /**
+     * Returns the properties resulting from a check. Reuses a buffer.
+     * @param result
+     * @return
+     */
+    private PredictiveProperty[] getProperties(NodeChecker.Result result) {
+        bufferProperties[0] = propertyChecked;
+        bufferProperties[1] = result.privacyModelFulfilled ? propertyAnonymous : propertyNotAnonymous;
+        if (result.minimalClassSizeFulfilled == null) {
+            bufferProperties[2] = null;
+        } else {
+            bufferProperties[2] = result.minimalClassSizeFulfilled ? propertyKAnonymous : propertyNotKAnonymous;
+        }
+        return bufferProperties;
+    }
+
+    /**
+     * Tracks the optimum and creates a checkpoint, if one is due
+     * @param identifier
+     * @param anonymous
+     * @param loss
+     */
+    private void afterCheck(long identifier, boolean anonymous, InformationLoss<?> loss) {
+        if (anonymous && loss != null && (optimumLoss == null || loss.compareTo(optimumLoss) < 0)) {
+            optimum = identifier;
+            optimumLoss = loss;
+        }
+        if (checkpointWriter != null) {
+            checkpoint(open, 0);
+        }
+    }
+
+    /**
+     * Returns all properties in a fixed order
+     * @return
+     */
+    private PredictiveProperty[] getProperties() {
+        return new PredictiveProperty[] { propertyAnonymous,
+                                          propertyChecked,
+                                          propertyForceSnapshot,
+                                          propertyInsufficientUtility,
+                                          propertyKAnonymous,
+                                          propertyNotAnonymous,
+                                          propertyNotKAnonymous,
+                                          propertySuccessorsPruned,
+                                          propertyVisited,
+                                          propertyExpanded };
+    }
+
     /**
      * Reverses the given array
      * @param input
@@ -405,6 +877,31 @@ public class SolutionSpace {
         return result;
     }
 
+    /**
+     * Returns whether the order of dimensions in JHPL's space is the reverse of ARX's order
+     * @return
+     */
+    boolean isReversed() {
+        return reversed;
+    }
+
+    /**
+     * Reverses the first elements of the given array in place
+     * @param array
+     * @param length
+     */
+    static void reverse(long[] array, int length) {
+        int lower = 0;
+        int upper = length - 1;
+        while (lower < upper) {
+            long temp = array[lower];
+            array[lower] = array[upper];
+            array[upper] = temp;
+            lower++;
+            upper--;
+        }
+    }
+
     /**
      * Sets the monotonicity of the anonymity property
      * @param config
@@ -428,7 +925,25 @@ public class SolutionSpace {
      * @return
      */
     protected int[] fromJHPL(int[] transformation) {
-        int[] result = new int[transformation.length];
+        if (!reversed && !offset) {
+            return transformation;
+        }
+        return fromJHPL(transformation, new int[transformation.length]);
+    }
+
+    /**
+     * Internal method that adds the offsets. Reuses the given array.
+     * @param transformation
+     * @param result
+     * @return
+     */
+    protected int[] fromJHPL(int[] transformation, int[] result) {
+        if (!reversed) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = transformation[i] + offsetIndices[i];
+            }
+            return result;
+        }
         for (int i=0; i<result.length; i++) {
             result[i] = transformation[transformation.length - i - 1] + offsetIndices[transformation.length - i - 1];
         }
@@ -451,6 +966,9 @@ public class SolutionSpace {
      * @return
      */
     protected InformationLoss<?> getInformationLoss(long identifier) {
+        if (utilityStore != null) {
+            return utilityStore.get(identifier);
+        }
         return utility.getOrDefault(identifier, null);
     }
     
@@ -459,7 +977,10 @@ public class SolutionSpace {
      * @param identifier
      * @return
      */
-    protected InformationLoss<?> getLowerBound(long identifier) {
+    public InformationLoss<?> getLowerBound(long identifier) {
+        if (lowerBoundStore != null) {
+            return lowerBoundStore.get(identifier);
+        }
         return lowerBound.getOrDefault(identifier, null);
     }
 
@@ -470,6 +991,34 @@ public class SolutionSpace {
      */
     protected void setData(long id, Object object) {
         data.put(id, object);
+        if (lattice.getByteBudget() != Long.MAX_VALUE && ++dataUpdates >= BUDGET_INTERVAL) {
+            dataUpdates = 0;
+            if (data.size() >= dataEvictionSize &&
+                lattice.getByteSize() + data.size() * DATA_ENTRY_BYTES > lattice.getByteBudget()) {
+                evictData();
+                
+                // Back off until the map has grown by half, as the budget may not be meetable
+                dataEvictionSize = data.size() + Math.max(data.size() / 2, BUDGET_INTERVAL);
+            }
+        }
+    }
+
+    /**
+     * Removes data associated with transformations that have already been checked. Such data is
+     * typically a cached result, which is not needed anymore. Data of transformations that have
+     * not been checked yet, e.g. results seeded from previous runs, is retained.
+     */
+    private void evictData() {
+        long[] evict = new long[data.size()];
+        int count = 0;
+        for (LongObjectCursor<Object> cursor : data) {
+            if (lattice.hasProperty(cursor.key, propertyChecked)) {
+                evict[count++] = cursor.key;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            data.remove(evict[i]);
+        }
     }
 
     /**
@@ -478,7 +1027,11 @@ public class SolutionSpace {
      * @param loss
      */
     protected void setInformationLoss(long identifier, InformationLoss<?> loss) {
-        utility.put(identifier, loss);
+        if (utilityStore != null) {
+            utilityStore.put(identifier, loss);
+        } else {
+            utility.put(identifier, loss);
+        }
     }
 
     /**
@@ -487,7 +1040,24 @@ public class SolutionSpace {
      * @param loss
      */
     protected void setLowerBound(long identifier, InformationLoss<?> loss) {
-        lowerBound.put(identifier, loss);
+        if (lowerBoundStore != null) {
+            lowerBoundStore.put(identifier, loss);
+        } else {
+            lowerBound.put(identifier, loss);
+        }
+    }
+
+    /**
+     * Stores the result of checking the given transformation
+     * @param transformation In JHPL's space
+     * @param identifier
+     * @param result
+     */
+    void recordCheck(int[] transformation, long identifier, NodeChecker.Result result) {
+        lattice.putProperties(transformation, getProperties(result));
+        setInformationLoss(identifier, result.informationLoss);
+        setLowerBound(identifier, result.lowerBound);
+        afterCheck(identifier, result.privacyModelFulfilled, result.informationLoss);
     }
 
     /**
@@ -505,6 +1075,16 @@ public class SolutionSpace {
      * @return
      */
     protected int[] toJHPL(int[] transformation) {
+        if (!reversed) {
+            if (!offset) {
+                return transformation;
+            }
+            int[] result = new int[transformation.length];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = transformation[i] - offsetIndices[i];
+            }
+            return result;
+        }
         int[] result = new int[transformation.length];
         for (int i=0; i<result.length; i++) {
             result[i]=transformation[transformation.length - i - 1] - offsetIndices[i];
@@ -0,0 +1,388 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2015 Florian Kohlmayer, Fabian Prasser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.framework.lattice;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import org.deidentifier.arx.metric.InformationLoss;
+
+import de.linearbits.jhpl.JHPLCheckpoint;
+
+/**
+ * An immutable copy of the state of a solution space and of the open transformations of a search
+ * algorithm. Checkpoints are created on the thread which performs the search and can be written
+ * to a file by any thread.
+ *
+ * @author Fabian Prasser
+ */
+public class SolutionSpaceCheckpoint {
+
+    /** Constant */
+    private static final int           VERSION = 2;
+
+    /** The fingerprint of the data and configuration, may be null */
+    private final String               fingerprint;
+    /** The minimal levels, in ARX's order */
+    private final int[]                minLevels;
+    /** The maximal levels, in ARX's order */
+    private final int[]                maxLevels;
+    /** Whether JHPL's order of dimensions is reversed */
+    private final boolean              reversed;
+    /** Whether the anonymity property is predictable */
+    private final boolean              predictable;
+    /** The content of the lattice */
+    private final JHPLCheckpoint       lattice;
+    /** Identifiers of transformations with information loss */
+    private final long[]               utilityIdentifiers;
+    /** Information loss */
+    private final InformationLoss<?>[] utility;
+    /** Identifiers of transformations with lower bounds */
+    private final long[]               lowerBoundIdentifiers;
+    /** Lower bounds */
+    private final InformationLoss<?>[] lowerBound;
+    /** Identifiers of the open transformations of the search algorithm */
+    private final long[]               open;
+    /** Identifier of the optimum, -1 if none */
+    private final long                 optimum;
+
+    /**
+     * Creates a new instance
+     * @param fingerprint
+     * @param minLevels
+     * @param maxLevels
+     * @param reversed
+     * @param predictable
+     * @param lattice
+     * @param utilityIdentifiers
+     * @param utility
+     * @param lowerBoundIdentifiers
+     * @param lowerBound
+     * @param open
+     * @param optimum
+     */
+    SolutionSpaceCheckpoint(String fingerprint,
+                            int[] minLevels,
+                            int[] maxLevels,
+                            boolean reversed,
+                            boolean predictable,
+                            JHPLCheckpoint lattice,
+                            long[] utilityIdentifiers,
+                            InformationLoss<?>[] utility,
+                            long[] lowerBoundIdentifiers,
+                            InformationLoss<?>[] lowerBound,
+                            long[] open,
+                            long optimum) {
+        this.fingerprint = fingerprint;
+        this.minLevels = minLevels;
+        this.maxLevels = maxLevels;
+        this.reversed = reversed;
+        this.predictable = predictable;
+        this.lattice = lattice;
+        this.utilityIdentifiers = utilityIdentifiers;
+        this.utility = utility;
+        this.lowerBoundIdentifiers = lowerBoundIdentifiers;
+        this.lowerBound = lowerBound;
+        this.open = open;
+        this.optimum = optimum;
+    }
+
+    /**
+     * Reads a checkpoint from the given file
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public static SolutionSpaceCheckpoint read(File file) throws IOException {
+        ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != VERSION) {
+                throw new IOException("Unsupported checkpoint version");
+            }
+            String fingerprint = (String) in.readObject();
+            int[] minLevels = readInts(in);
+            int[] maxLevels = readInts(in);
+            boolean reversed = in.readBoolean();
+            boolean predictable = in.readBoolean();
+            JHPLCheckpoint lattice = JHPLCheckpoint.read(in);
+            long[] utilityIdentifiers = readLongs(in);
+            InformationLoss<?>[] utility = readLosses(in, utilityIdentifiers.length);
+            long[] lowerBoundIdentifiers = readLongs(in);
+            InformationLoss<?>[] lowerBound = readLosses(in, lowerBoundIdentifiers.length);
+            long[] open = readLongs(in);
+            long optimum = in.readLong();
+            return new SolutionSpaceCheckpoint(fingerprint, minLevels, maxLevels, reversed, predictable, lattice,
+                                               utilityIdentifiers, utility, lowerBoundIdentifiers, lowerBound, open, optimum);
+        } catch (ClassNotFoundException e) {
+            throw new IOException(e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reads an array
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    private static int[] readInts(ObjectInputStream in) throws IOException {
+        int[] result = new int[in.readInt()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = in.readInt();
+        }
+        return result;
+    }
+
+    /**
+     * Reads an array
+     * @param in
+     * @return
+     * @throws IOException
+     */
+    private static long[] readLongs(ObjectInputStream in) throws IOException {
+        long[] result = new long[in.readInt()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = in.readLong();
+        }
+        return result;
+    }
+
+    /**
+     * Reads an array of losses
+     * @param in
+     * @param length
+     * @return
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    private static InformationLoss<?>[] readLosses(ObjectInputStream in, int length) throws IOException, ClassNotFoundException {
+        InformationLoss<?>[] result = new InformationLoss<?>[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = (InformationLoss<?>) in.readObject();
+        }
+        return result;
+    }
+
+    /**
+     * Writes an array
+     * @param out
+     * @param array
+     * @throws IOException
+     */
+    private static void writeInts(ObjectOutputStream out, int[] array) throws IOException {
+        out.writeInt(array.length);
+        for (int value : array) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Writes an array
+     * @param out
+     * @param array
+     * @throws IOException
+     */
+    private static void writeLongs(ObjectOutputStream out, long[] array) throws IOException {
+        out.writeInt(array.length);
+        for (long value : array) {
+            out.writeLong(value);
+        }
+    }
+
+    /**
+     * Returns the fingerprint of the data and configuration for which this checkpoint has been
+     * created, null if it is unknown
+     * @return
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns the identifiers of the open transformations of the search algorithm
+     * @return
+     */
+    public long[] getOpenTransformations() {
+        return open.clone();
+    }
+
+    /**
+     * Returns the number of transformations stored in the checkpoint
+     * @return
+     */
+    public int getNumTransformations() {
+        return lattice.getNumNodes();
+    }
+
+    /**
+     * Returns whether this checkpoint has been created for a solution space with the given parameters.
+     * The fingerprint covers the data, the hierarchies and the configuration, which the parameters of
+     * the solution space alone do not identify.
+     * @param fingerprint The fingerprint of the data and configuration, see {@link org.deidentifier.arx.framework.check.CheckResultCache#getFingerprint}
+     * @param minLevels
+     * @param maxLevels
+     * @param reversed
+     * @return
+     */
+    public boolean isCompatible(String fingerprint, int[] minLevels, int[] maxLevels, boolean reversed) {
+        return (fingerprint == null ? this.fingerprint == null : fingerprint.equals(this.fingerprint)) &&
+               this.reversed == reversed && Arrays.equals(this.minLevels, minLevels) && Arrays.equals(this.maxLevels, maxLevels);
+    }
+
+    /**
+     * Writes this checkpoint to the given file. The file is replaced atomically, which means that
+     * it always contains a complete checkpoint, even if the process is terminated while writing.
+     * @param file
+     * @throws IOException
+     */
+    public void write(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        boolean written = false;
+        try {
+            write(temp, file);
+            written = true;
+        } finally {
+            if (!written) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Writes this checkpoint to the given temporary file and moves it to the given file
+     * @param temp
+     * @param file
+     * @throws IOException
+     */
+    private void write(File temp, File file) throws IOException {
+        ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(VERSION);
+            out.writeObject(fingerprint);
+            writeInts(out, minLevels);
+            writeInts(out, maxLevels);
+            out.writeBoolean(reversed);
+            out.writeBoolean(predictable);
+            lattice.write(out);
+            writeLongs(out, utilityIdentifiers);
+            for (InformationLoss<?> loss : utility) {
+                out.writeObject(loss);
+            }
+            writeLongs(out, lowerBoundIdentifiers);
+            for (InformationLoss<?> loss : lowerBound) {
+                out.writeObject(loss);
+            }
+            writeLongs(out, open);
+            out.writeLong(optimum);
+        } finally {
+            out.close();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Returns the content of the lattice
+     * @return
+     */
+    JHPLCheckpoint getLattice() {
+        return lattice;
+    }
+
+    /**
+     * Returns information loss
+     * @return
+     */
+    InformationLoss<?>[] getLowerBound() {
+        return lowerBound;
+    }
+
+    /**
+     * Returns the identifiers of transformations with lower bounds
+     * @return
+     */
+    long[] getLowerBoundIdentifiers() {
+        return lowerBoundIdentifiers;
+    }
+
+    /**
+     * Returns the maximal levels
+     * @return
+     */
+    int[] getMaxLevels() {
+        return maxLevels;
+    }
+
+    /**
+     * Returns the minimal levels
+     * @return
+     */
+    int[] getMinLevels() {
+        return minLevels;
+    }
+
+    /**
+     * Returns the identifier of the checked transformation with the least information loss that
+     * fulfills the privacy model, -1 if none
+     * @return
+     */
+    long getOptimum() {
+        return optimum;
+    }
+
+    /**
+     * Returns information loss
+     * @return
+     */
+    InformationLoss<?>[] getUtility() {
+        return utility;
+    }
+
+    /**
+     * Returns the identifiers of transformations with information loss
+     * @return
+     */
+    long[] getUtilityIdentifiers() {
+        return utilityIdentifiers;
+    }
+
+    /**
+     * Returns whether the anonymity property is predictable
+     * @return
+     */
+    boolean isPredictable() {
+        return predictable;
+    }
+
+    /**
+     * Returns whether JHPL's order of dimensions is reversed
+     * @return
+     */
+    boolean isReversed() {
+        return reversed;
+    }
+}
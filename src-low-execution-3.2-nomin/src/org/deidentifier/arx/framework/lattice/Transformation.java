@@ -23,20 +23,20 @@ import org.deidentifier.arx.framework.check.NodeChecker;
 import org.deidentifier.arx.metric.InformationLoss;
 
 import cern.colt.list.LongArrayList;
-import de.linearbits.jhpl.JHPLIterator.LongIterator;
 import de.linearbits.jhpl.Lattice;
 import de.linearbits.jhpl.PredictiveProperty;
 import de.linearbits.jhpl.PredictiveProperty.Direction;
 
 /**
- * The class Transformation.
+ * The class Transformation. Instances obtained via {@link SolutionSpace#newTransformationCursor()}
+ * are cursors, which can be reset to different transformations without allocating memory.
  * 
  * @author Fabian Prasser
  */
 public class Transformation {
 
     /** The id. */
-    private final long                      identifier;
+    private long                            identifier;
 
     /** The lattice */
     private final Lattice<Integer, Integer> lattice;
@@ -56,6 +56,9 @@ public class Transformation {
     /** Transformation in JHPL's space */
     private final int[]                     transformationJHPL;
 
+    /** Buffer for the transformation in ARX's space, only for cursors */
+    private final int[]                     bufferARX;
+
     /**
      * Instantiates a new transformation.
      * @param transformation In ARX space
@@ -68,6 +71,7 @@ public class Transformation {
         this.transformationARX = transformation;
         this.transformationJHPL = solutionSpace.toJHPL(transformation);
         this.identifier = lattice.space().toId(transformationJHPL);
+        this.bufferARX = null;
     }
 
     /**
@@ -85,6 +89,20 @@ public class Transformation {
         this.solutionSpace = solutionSpace;
         this.transformationJHPL = transformationJHPL;
         this.identifier = identifier;
+        this.bufferARX = null;
+    }
+
+    /**
+     * Instantiates a new cursor, which must be reset before use.
+     * @param lattice
+     * @param solutionSpace
+     */
+    Transformation(Lattice<Integer, Integer> lattice, SolutionSpace solutionSpace) {
+        this.lattice = lattice;
+        this.solutionSpace = solutionSpace;
+        this.transformationJHPL = new int[lattice.numDimensions()];
+        this.bufferARX = new int[lattice.numDimensions()];
+        this.identifier = -1;
     }
 
     /**
@@ -101,7 +119,8 @@ public class Transformation {
      */
     public int[] getGeneralization() {
         if (this.transformationARX == null) {
-            this.transformationARX = solutionSpace.fromJHPL(transformationJHPL);
+            this.transformationARX = bufferARX != null ? solutionSpace.fromJHPL(transformationJHPL, bufferARX) :
+                                                         solutionSpace.fromJHPL(transformationJHPL);
         }
         return this.transformationARX;
     }
@@ -152,6 +171,24 @@ public class Transformation {
         return this.lattice.hasProperty(this.transformationJHPL, property);
     }
 
+    /**
+     * Resets this cursor to the transformation with the given identifier. Arrays returned by
+     * previous calls to {@link #getGeneralization()} are overwritten.
+     * @param identifier
+     * @return This cursor
+     */
+    public Transformation reset(long identifier) {
+        if (this.bufferARX == null) {
+            throw new IllegalStateException("Only cursors can be reset");
+        }
+        this.lattice.space().toIndex(this.transformationJHPL, identifier);
+        this.identifier = identifier;
+        this.transformationARX = null;
+        this.levelARX = -1;
+        this.levelJHPL = -1;
+        return this;
+    }
+
     /**
      * Sets the properties to the given node.
      *
@@ -159,29 +196,7 @@ public class Transformation {
      * @param result the result
      */
     public void setChecked(NodeChecker.Result result) {
-        
-        // Set checked
-        this.setProperty(solutionSpace.getPropertyChecked());
-        
-        // Anonymous
-        if (result.privacyModelFulfilled){
-            this.setProperty(solutionSpace.getPropertyAnonymous());
-        } else {
-            this.setProperty(solutionSpace.getPropertyNotAnonymous());
-        }
-
-        // k-Anonymous
-        if (result.minimalClassSizeFulfilled != null) {
-            if (result.minimalClassSizeFulfilled){
-                this.setProperty(solutionSpace.getPropertyKAnonymous());
-            } else {
-                this.setProperty(solutionSpace.getPropertyNotKAnonymous());
-            }
-        }
-
-        // Infoloss
-        this.setInformationLoss(result.informationLoss);
-        this.setLowerBound(result.lowerBound);
+        this.solutionSpace.recordCheck(this.transformationJHPL, this.identifier, result);
     }
 
     /**
@@ -222,22 +237,10 @@ public class Transformation {
      * @param property
      */
     public void setPropertyToNeighbours(PredictiveProperty property) {
-        LongIterator neighbors;
         if (property.getDirection() == Direction.UP) {
-            neighbors = lattice.nodes().listSuccessorsAsIdentifiers(transformationJHPL, identifier);
+            lattice.putPropertyToSuccessors(identifier, property);
         } else if (property.getDirection() == Direction.DOWN) {
-            neighbors = lattice.nodes().listPredecessorsAsIdentifiers(transformationJHPL, identifier);
-        } else {
-            return;
-        }
-        LongArrayList list = new LongArrayList();
-        for (;neighbors.hasNext();) {
-            list.add(neighbors.next());
-        }
-        for (int i=0; i<list.size(); i++) {
-            int[] index = lattice.space().toIndex(list.getQuick(i));
-            int level = lattice.nodes().getLevel(index);
-            lattice.putProperty(index, property);
+            lattice.putPropertyToPredecessors(identifier, property);
         }
     }
     
@@ -248,12 +251,18 @@ public class Transformation {
      * @return
      */
     public LongArrayList getPredecessors() {
-        
-        LongArrayList result = new LongArrayList();
-        for (LongIterator iter = lattice.nodes().listPredecessorsAsIdentifiers(transformationJHPL, identifier); iter.hasNext();) {
-            result.add(iter.next());
-        }
-        return result;
+        long[] result = new long[transformationJHPL.length];
+        return new LongArrayList(Arrays.copyOf(result, getPredecessors(result)));
+    }
+
+    /**
+     * Writes the identifiers of all predecessors into the given array, in the same order as
+     * {@link #getPredecessors()}. This method does not allocate memory.
+     * @param result An array with at least one slot per dimension
+     * @return The number of predecessors
+     */
+    public int getPredecessors(long[] result) {
+        return lattice.nodes().predecessors(transformationJHPL, identifier, result);
     }
     
     /**
@@ -287,19 +296,21 @@ public class Transformation {
      * @return
      */
     public LongArrayList getSuccessors() {
-        cern.colt.list.LongArrayList result = new cern.colt.list.LongArrayList();
-        for (LongIterator iter = lattice.nodes().listSuccessorsAsIdentifiers(transformationJHPL, identifier); iter.hasNext();) {
-            result.add(iter.next());
-        }
-        int lower = 0;
-        int upper = result.size() - 1;
-        while (lower < upper) {
-            long temp = result.get(lower);
-            result.set(lower, result.get(upper));
-            result.set(upper, temp);
-            lower++;
-            upper--;
+        long[] result = new long[transformationJHPL.length];
+        return new LongArrayList(Arrays.copyOf(result, getSuccessors(result)));
+    }
+
+    /**
+     * Writes the identifiers of all successors into the given array, in the same order as
+     * {@link #getSuccessors()}. This method does not allocate memory.
+     * @param result An array with at least one slot per dimension
+     * @return The number of successors
+     */
+    public int getSuccessors(long[] result) {
+        int count = lattice.nodes().successors(transformationJHPL, identifier, result);
+        if (solutionSpace.isReversed()) {
+            SolutionSpace.reverse(result, count);
         }
-        return result;
+        return count;
     }
 }
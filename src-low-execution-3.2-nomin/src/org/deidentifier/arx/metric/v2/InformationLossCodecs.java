@@ -0,0 +1,124 @@
+/*
+ * ARX: Powerful Data Anonymization
+ * Copyright 2012 - 2015 Florian Kohlmayer, Fabian Prasser
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.deidentifier.arx.metric.v2;
+
+import java.util.Arrays;
+
+import org.deidentifier.arx.framework.lattice.InformationLossStore.Codec;
+import org.deidentifier.arx.framework.lattice.InformationLossStore.ScalarCodec;
+import org.deidentifier.arx.metric.InformationLoss;
+import org.deidentifier.arx.metric.Metric;
+import org.deidentifier.arx.metric.Metric.AggregateFunction;
+
+/**
+ * Codecs for storing the information loss of metrics in primitive columns. They are located in this
+ * package, because the constructors of the information loss classes are not visible outside of it.
+ *
+ * @author Fabian Prasser
+ */
+public class InformationLossCodecs {
+
+    /**
+     * Codec for multi-dimensional information loss aggregated with the geometric mean. Encoded
+     * losses consist of the aggregate, by which they are compared, followed by the values for
+     * each dimension. The weights are the same for all losses of a metric and are taken from
+     * the first loss encoded.
+     *
+     * @author Fabian Prasser
+     */
+    private static class GeometricMeanCodec implements Codec {
+
+        /** The number of dimensions */
+        private final int dimensions;
+
+        /** The weights */
+        private double[]  weights;
+
+        /**
+         * Creates a new instance
+         * @param dimensions
+         */
+        private GeometricMeanCodec(int dimensions) {
+            this.dimensions = dimensions;
+        }
+
+        @Override
+        public int compare(double[] values, int offset1, int offset2) {
+            return Double.compare(values[offset1], values[offset2]);
+        }
+
+        @Override
+        public InformationLoss<?> decode(double[] values, int offset) {
+            return new ILMultiDimensionalGeometricMean(Arrays.copyOfRange(values, offset + 1, offset + 1 + dimensions), weights);
+        }
+
+        @Override
+        public void encode(InformationLoss<?> loss, double[] values, int offset) {
+            ILMultiDimensionalGeometricMean _loss = (ILMultiDimensionalGeometricMean) loss;
+            if (weights == null) {
+                weights = _loss.getWeights();
+            }
+            values[offset] = _loss.getAggregate();
+            System.arraycopy(_loss.getValue(), 0, values, offset + 1, dimensions);
+        }
+
+        @Override
+        public int getWidth() {
+            return dimensions + 1;
+        }
+    }
+
+    /**
+     * Codec for single-dimensional information loss
+     *
+     * @author Fabian Prasser
+     */
+    private static class SingleDimensionalCodec extends ScalarCodec {
+
+        @Override
+        public InformationLoss<?> decode(double[] values, int offset) {
+            return new ILSingleDimensional(values[offset]);
+        }
+    }
+
+    /**
+     * Returns a codec for the information loss of the given metric, null if the metric is not supported.
+     * Supported are single-dimensional metrics and multi-dimensional metrics aggregated with the
+     * geometric mean, e.g. the loss metric. The metric must have been initialized.
+     * 
+     * @param metric
+     * @return
+     */
+    public static Codec create(Metric<?> metric) {
+        if (metric instanceof AbstractMetricSingleDimensional) {
+            return new SingleDimensionalCodec();
+        }
+        if (metric instanceof AbstractMetricMultiDimensional &&
+            ((AbstractMetricMultiDimensional) metric).getAggregateFunction() == AggregateFunction.GEOMETRIC_MEAN) {
+            return new GeometricMeanCodec(((double[]) metric.createMaxInformationLoss().getValue()).length);
+        }
+        return null;
+    }
+
+    /**
+     * No instances
+     */
+    private InformationLossCodecs() {
+        // Empty by design
+    }
+}